@@ -0,0 +1,55 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Общие данные для бенчмарков: ObjectMapper с теми же настройками,
+ * что и у Spring Boot, и детерминированные пользователи.
+ */
+public final class BenchmarkData {
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 5, 17, 10, 30, 15);
+
+    private BenchmarkData() {
+    }
+
+    public static ObjectMapper objectMapper() {
+        return objectMapper(new MappingJsonFactory());
+    }
+
+    public static ObjectMapper objectMapper(JsonFactory factory) {
+        return Jackson2ObjectMapperBuilder.json()
+                .factory(factory)
+                .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .build();
+    }
+
+    public static UserDto userDto(int id) {
+        return new UserDto(id, "User " + id, "user" + id + "@example.com", 20 + id % 60,
+                CREATED_AT.plusSeconds(id), 0);
+    }
+
+    public static UserCreateDto userCreateDto(int id) {
+        UserCreateDto dto = new UserCreateDto();
+        dto.setName("User " + id);
+        dto.setEmail("user" + id + "@example.com");
+        dto.setAge(20 + id % 60);
+        dto.setCreatedAt(CREATED_AT.plusSeconds(id));
+        return dto;
+    }
+
+    public static List<UserDto> userDtos(int size) {
+        List<UserDto> users = new ArrayList<>(size);
+        for (int i = 1; i <= size; i++) {
+            users.add(userDto(i));
+        }
+        return users;
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UserJsonBenchmark {
+    private ObjectWriter userDtoWriter;
+    private ObjectReader userDtoReader;
+    private ObjectWriter userCreateDtoWriter;
+    private ObjectReader userCreateDtoReader;
+
+    private UserDto userDto;
+    private UserCreateDto userCreateDto;
+    private byte[] userDtoJson;
+    private byte[] userCreateDtoJson;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = BenchmarkData.objectMapper();
+        userDtoWriter = objectMapper.writerFor(UserDto.class);
+        userDtoReader = objectMapper.readerFor(UserDto.class);
+        userCreateDtoWriter = objectMapper.writerFor(UserCreateDto.class);
+        userCreateDtoReader = objectMapper.readerFor(UserCreateDto.class);
+
+        userDto = BenchmarkData.userDto(42);
+        userCreateDto = BenchmarkData.userCreateDto(42);
+        userDtoJson = userDtoWriter.writeValueAsBytes(userDto);
+        userCreateDtoJson = userCreateDtoWriter.writeValueAsBytes(userCreateDto);
+    }
+
+    @Benchmark
+    public byte[] serializeUserDto() throws IOException {
+        return userDtoWriter.writeValueAsBytes(userDto);
+    }
+
+    @Benchmark
+    public UserDto deserializeUserDto() throws IOException {
+        return userDtoReader.readValue(userDtoJson);
+    }
+
+    @Benchmark
+    public byte[] serializeUserCreateDto() throws IOException {
+        return userCreateDtoWriter.writeValueAsBytes(userCreateDto);
+    }
+
+    @Benchmark
+    public UserCreateDto deserializeUserCreateDto() throws IOException {
+        return userCreateDtoReader.readValue(userCreateDtoJson);
+    }
+}
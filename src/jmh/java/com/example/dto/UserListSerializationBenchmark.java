@@ -0,0 +1,42 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class UserListSerializationBenchmark {
+    @Param({"1000", "100000", "1000000"})
+    private int size;
+
+    private ObjectWriter writer;
+    private List<UserDto> users;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = BenchmarkData.objectMapper();
+        writer = objectMapper.writerFor(objectMapper.getTypeFactory()
+                .constructCollectionType(List.class, UserDto.class));
+        users = BenchmarkData.userDtos(size);
+    }
+
+    @Benchmark
+    public void serializeList() throws IOException {
+        writer.writeValue(OutputStream.nullOutputStream(), users);
+    }
+
+    @Benchmark
+    public byte[] serializeListToBytes() throws IOException {
+        return writer.writeValueAsBytes(users);
+    }
+}
@@ -0,0 +1,72 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.MappingJsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Кодирование и декодирование списка UserDto в JSON, CBOR и Smile — те же форматы,
+ * что отдаёт UserController по Accept. Размер тела печатается при старте каждого форка.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class UserPayloadFormatBenchmark {
+    public enum Format {
+        JSON(MappingJsonFactory::new),
+        CBOR(CBORFactory::new),
+        SMILE(SmileFactory::new);
+
+        private final Supplier<JsonFactory> factory;
+
+        Format(Supplier<JsonFactory> factory) {
+            this.factory = factory;
+        }
+    }
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    private Format format;
+
+    @Param({"10000"})
+    private int size;
+
+    private ObjectWriter writer;
+    private ObjectReader reader;
+    private List<UserDto> users;
+    private byte[] payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper objectMapper = BenchmarkData.objectMapper(format.factory.get());
+        CollectionType listType = objectMapper.getTypeFactory().constructCollectionType(List.class, UserDto.class);
+        writer = objectMapper.writerFor(listType);
+        reader = objectMapper.readerFor(listType);
+        users = BenchmarkData.userDtos(size);
+        payload = writer.writeValueAsBytes(users);
+        System.out.printf("%n%s: %d пользователей, %d байт%n", format, size, payload.length);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(users);
+    }
+
+    @Benchmark
+    public List<UserDto> decode() throws IOException {
+        return reader.readValue(payload);
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.exception;
+
+import com.example.dto.ApiError;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Путь ответа об ошибке: создание доменного исключения и сборка ApiError
+ * через GlobalExceptionHandler.
+ * <p>
+ * Методы {@code *Legacy} воспроизводят прежний путь: исключение со стеком,
+ * путь через getDescription().replace() и поиск счётчика по тегам на каждый вызов.
+ * Исключения бросаются на глубине {@code stackDepth} кадров, как из-под
+ * фильтров Tomcat и Spring MVC. Аллокации смотреть с {@code -prof gc}:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.args="ErrorResponse -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ErrorResponseBenchmark {
+    @Param({"120"})
+    private int stackDepth;
+
+    private MeterRegistry meterRegistry;
+    private GlobalExceptionHandler handler;
+    private MockHttpServletRequest servletRequest;
+    private WebRequest webRequest;
+
+    @Setup
+    public void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        handler = new GlobalExceptionHandler(meterRegistry);
+        servletRequest = new MockHttpServletRequest("GET", "/api/users/404");
+        webRequest = new ServletWebRequest(servletRequest);
+    }
+
+    @Benchmark
+    public ResponseEntity<ApiError> notFound() {
+        NotFoundException ex = atDepth(stackDepth,
+                () -> new NotFoundException(ErrorCode.USER_NOT_FOUND, "Пользователь не найден: 404"));
+        return handler.handleNotFound(ex, servletRequest);
+    }
+
+    @Benchmark
+    public ResponseEntity<ApiError> conflict() {
+        ConflictException ex = atDepth(stackDepth,
+                () -> new ConflictException(ErrorCode.EMAIL_TAKEN, "Email уже существует: user@example.com"));
+        return handler.handleConflict(ex, servletRequest);
+    }
+
+    @Benchmark
+    public ResponseEntity<ApiError> notFoundLegacy() {
+        RuntimeException ex = atDepth(stackDepth, () -> new RuntimeException("Пользователь не найден: 404"));
+        return legacyResponse(ex, HttpStatus.NOT_FOUND);
+    }
+
+    @Benchmark
+    public ResponseEntity<ApiError> conflictLegacy() {
+        RuntimeException ex = atDepth(stackDepth,
+                () -> new RuntimeException("Email уже существует: user@example.com"));
+        return legacyResponse(ex, HttpStatus.CONFLICT);
+    }
+
+    private ResponseEntity<ApiError> legacyResponse(RuntimeException ex, HttpStatus status) {
+        meterRegistry.counter(GlobalExceptionHandler.ERRORS_METRIC,
+                "exception", ex.getClass().getSimpleName(),
+                "status", String.valueOf(status.value())).increment();
+        ApiError error = new ApiError(LocalDateTime.now(), status.value(), status.getReasonPhrase(), null,
+                ex.getMessage(), webRequest.getDescription(false).replace("uri=", ""));
+        return new ResponseEntity<>(error, status);
+    }
+
+    private static <T> T atDepth(int depth, Supplier<T> supplier) {
+        return depth <= 0 ? supplier.get() : atDepth(depth - 1, supplier);
+    }
+}
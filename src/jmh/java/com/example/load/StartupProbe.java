@@ -0,0 +1,78 @@
+package com.example.load;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Время до первого успешного ответа: запускает сервис командой из аргументов,
+ * опрашивает URL до ответа 200 и останавливает процесс. Повторяется runs раз,
+ * печатаются все замеры и медиана. Сравнивать обычный запуск и профиль startup
+ * (AOT + CDS + ленивая инициализация, см. application-startup.properties):
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.example.load.StartupProbe \
+ *     -Dbenchmark.args="http://localhost:8080/api/users?limit=1 5 java -jar target/user-service-1.0-SNAPSHOT.jar"
+ * </pre>
+ * Аргументы: URL первого запроса, число запусков, команда запуска сервиса.
+ */
+public class StartupProbe {
+    private static final Duration TIMEOUT = Duration.ofMinutes(2);
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 3) {
+            System.err.println("Usage: StartupProbe <url> <runs> <command>...");
+            System.exit(1);
+        }
+        URI target = URI.create(args[0]);
+        int runs = Integer.parseInt(args[1]);
+        List<String> command = Arrays.asList(args).subList(2, args.length);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(1))
+                .build();
+        long[] millis = new long[runs];
+        for (int run = 0; run < runs; run++) {
+            millis[run] = measure(client, target, command);
+            System.out.printf("run %d: %d ms%n", run + 1, millis[run]);
+        }
+        Arrays.sort(millis);
+        System.out.printf("median: %d ms%n", millis[runs / 2]);
+    }
+
+    private static long measure(HttpClient client, URI target, List<String> command) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(target).timeout(Duration.ofSeconds(5)).GET().build();
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(command)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        try {
+            while (System.nanoTime() - start < TIMEOUT.toNanos()) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Сервис завершился с кодом " + process.exitValue());
+                }
+                try {
+                    if (client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode() == 200) {
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (IOException e) {
+                    // порт ещё не открыт
+                }
+                Thread.sleep(10);
+            }
+            throw new IllegalStateException("Нет ответа 200 за " + TIMEOUT);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(30, TimeUnit.SECONDS)) {
+                process.destroyForcibly();
+            }
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.load;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Нагрузочный тест с замкнутым циклом: N клиентов без пауз шлют GET-запросы
+ * к запущенному сервису, в конце печатаются пропускная способность и перцентили.
+ * Для сравнения режимов сервис запускается дважды, с
+ * --spring.threads.virtual.enabled=false и =true, при одинаковом размере пула Hikari:
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Dbenchmark.main=com.example.load.UserApiLoadTest \
+ *     -Dbenchmark.args="http://localhost:8080 500 30 /api/users/1 /api/users?limit=50"
+ * </pre>
+ * Аргументы: базовый URL, число клиентов, длительность в секундах, пути запросов.
+ */
+public class UserApiLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.err.println("Usage: UserApiLoadTest <baseUrl> <clients> <seconds> <path>...");
+            System.exit(1);
+        }
+        String baseUrl = args[0];
+        int clients = Integer.parseInt(args[1]);
+        Duration duration = Duration.ofSeconds(Long.parseLong(args[2]));
+        List<URI> targets = new ArrayList<>();
+        for (int i = 3; i < args.length; i++) {
+            targets.add(URI.create(baseUrl + args[i]));
+        }
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .build();
+        AtomicLong errors = new AtomicLong();
+        long deadline = System.nanoTime() + duration.toNanos();
+
+        List<Future<long[]>> results = new ArrayList<>();
+        try (ExecutorService workers = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int c = 0; c < clients; c++) {
+                int offset = c;
+                results.add(workers.submit(() -> runClient(client, targets, offset, deadline, errors)));
+            }
+        }
+
+        long[] latencies = results.stream()
+                .map(UserApiLoadTest::join)
+                .flatMapToLong(Arrays::stream)
+                .sorted()
+                .toArray();
+        report(latencies, errors.get(), duration);
+    }
+
+    private static long[] runClient(HttpClient client, List<URI> targets, int offset,
+                                    long deadline, AtomicLong errors) {
+        long[] latencies = new long[1024];
+        int count = 0;
+        for (int i = offset; System.nanoTime() < deadline; i++) {
+            HttpRequest request = HttpRequest.newBuilder(targets.get(i % targets.size()))
+                    .timeout(Duration.ofSeconds(30))
+                    .GET()
+                    .build();
+            long start = System.nanoTime();
+            try {
+                HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+                if (response.statusCode() >= 500) {
+                    errors.incrementAndGet();
+                }
+            } catch (Exception e) {
+                errors.incrementAndGet();
+            }
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = System.nanoTime() - start;
+        }
+        return Arrays.copyOf(latencies, count);
+    }
+
+    private static long[] join(Future<long[]> future) {
+        try {
+            return future.get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void report(long[] latencies, long errors, Duration duration) {
+        System.out.printf("requests:   %d (errors: %d)%n", latencies.length, errors);
+        System.out.printf("throughput: %.1f req/s%n", latencies.length / (double) duration.toSeconds());
+        if (latencies.length == 0) {
+            return;
+        }
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            int index = (int) Math.min(latencies.length - 1, Math.ceil(percentile / 100 * latencies.length) - 1);
+            System.out.printf("p%-9s %.2f ms%n", percentile + ":", latencies[Math.max(index, 0)] / 1_000_000.0);
+        }
+        System.out.printf("max:       %.2f ms%n", latencies[latencies.length - 1] / 1_000_000.0);
+    }
+}
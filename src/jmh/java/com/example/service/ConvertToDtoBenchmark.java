@@ -0,0 +1,37 @@
+package com.example.service;
+
+import com.example.dto.UserDto;
+import com.example.entity.User;
+import org.objenesis.ObjenesisStd;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConvertToDtoBenchmark {
+    private UserService userService;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        // convertToDTO не обращается к зависимостям сервиса, поэтому конструктор не вызываем
+        userService = new ObjenesisStd().newInstance(UserService.class);
+        user = new User();
+        user.setId(42);
+        user.setName("User 42");
+        user.setEmail("user42@example.com");
+        user.setAge(42);
+        user.setCreatedAt(LocalDateTime.of(2024, 5, 17, 10, 30, 15));
+    }
+
+    @Benchmark
+    public UserDto convertToDto() {
+        return userService.convertToDTO(user);
+    }
+}
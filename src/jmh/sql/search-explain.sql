@@ -0,0 +1,80 @@
+-- Проверка планов GET /api/users/search на 10M строк.
+-- Запускать на отдельной БД, где приложение уже создало схему и индексы
+-- (idx_users_created_at_id, idx_users_age_id, idx_users_name_c_id, idx_users_name_trgm):
+--   psql -v ON_ERROR_STOP=1 -h localhost -U postgres -d users_bench -f src/jmh/sql/search-explain.sql
+-- Каждый EXPLAIN должен показывать Index Scan / Bitmap Index Scan по своему индексу, без Seq Scan.
+-- Запросы повторяют SQL, который Hibernate строит в UserRepositoryImpl.search (limit = страница + 1).
+
+\timing on
+
+TRUNCATE users;
+
+INSERT INTO users (id, name, email, age, created_at, version)
+SELECT g,
+       (ARRAY['anna', 'boris', 'viktor', 'galina', 'dmitry', 'elena', 'zhanna', 'igor'])[1 + g % 8]
+           || '_' || substr(md5(g::text), 1, 8),
+       'user' || g || '@example.com',
+       18 + g % 73,
+       timestamp '2020-01-01' + (g * interval '15 seconds'),
+       0
+FROM generate_series(1, 10000000) AS g;
+
+SELECT setval('users_seq', (SELECT max(id) FROM users) + 50);
+
+VACUUM ANALYZE users;
+
+-- email = ? : idx по уникальному ограничению email
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, name, email, age, created_at, version FROM users
+WHERE email = 'user4242424@example.com'
+ORDER BY created_at, id LIMIT 51;
+
+-- lower(name) LIKE '%...%' : Bitmap Index Scan по idx_users_name_trgm
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, name, email, age, created_at, version FROM users
+WHERE lower(name) LIKE '%1f0e3d%' ESCAPE '\'
+ORDER BY created_at, id LIMIT 51;
+
+-- lower(name) LIKE '...%' : тот же триграммный индекс
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, name, email, age, created_at, version FROM users
+WHERE lower(name) LIKE 'zhanna_c4ca%' ESCAPE '\'
+ORDER BY created_at, id LIMIT 51;
+
+-- age BETWEEN, сортировка по возрасту: Index Scan по idx_users_age_id
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, name, email, age, created_at, version FROM users
+WHERE age >= 30 AND age <= 35
+ORDER BY age, id LIMIT 51;
+
+-- следующая страница того же запроса (keyset)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, name, email, age, created_at, version FROM users
+WHERE age >= 30 AND age <= 35 AND (age, id) > (31, 5000000)
+ORDER BY age, id LIMIT 51;
+
+-- глубокая страница без других фильтров: Index Cond по ROW(created_at, id) > ...,
+-- а не чтение idx_users_created_at_id с начала (Rows Removed by Filter ~ 0)
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, name, email, age, created_at, version FROM users
+WHERE (created_at, id) > (timestamp '2024-01-01 12:00:00', 9000000)
+ORDER BY created_at, id LIMIT 51;
+
+-- то же по возрасту без диапазона: при немногих значениях age индекс должен начинаться
+-- с (80, 9000000), а не с первой строки age = 80
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, name, email, age, created_at, version FROM users
+WHERE (age, id) > (80, 9000000)
+ORDER BY age, id LIMIT 51;
+
+-- created_at в диапазоне: Index Scan по idx_users_created_at_id
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, name, email, age, created_at, version FROM users
+WHERE created_at >= timestamp '2022-06-01' AND created_at < timestamp '2022-07-01'
+ORDER BY created_at, id LIMIT 51;
+
+-- сортировка по имени по убыванию, следующая страница: Index Scan Backward по idx_users_name_c_id
+EXPLAIN (ANALYZE, BUFFERS)
+SELECT id, name, email, age, created_at, version FROM users
+WHERE (name COLLATE "C", id) < ('igor_5', 100)
+ORDER BY name COLLATE "C" DESC, id DESC LIMIT 51;
@@ -0,0 +1,103 @@
+package com.example.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.reactivestreams.Publisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferFactory;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.http.codec.cbor.Jackson2CborDecoder;
+import org.springframework.http.codec.cbor.Jackson2CborEncoder;
+import org.springframework.http.codec.json.Jackson2JsonEncoder;
+import org.springframework.http.codec.json.Jackson2SmileDecoder;
+import org.springframework.http.codec.json.Jackson2SmileEncoder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.util.MimeType;
+import org.springframework.web.reactive.config.WebFluxConfigurer;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Бинарные форматы для внутренних клиентов: application/cbor и
+ * application/x-jackson-smile выбираются по Accept/Content-Type, JSON остаётся
+ * форматом по умолчанию. Маппер строится из того же Jackson2ObjectMapperBuilder,
+ * что и JSON, поэтому настройки spring.jackson.* действуют во всех форматах.
+ */
+@Configuration
+public class BinaryFormatsConfig {
+    // Конструкторы кодеков с маппером без явных типов по умолчанию берут типы JSON
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
+    private static final MediaType STREAM_SMILE = MediaType.parseMediaType("application/stream+x-jackson-smile");
+
+    @Bean
+    @Profile("!reactive")
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(cborMapper(builder));
+    }
+
+    @Bean
+    @Profile("!reactive")
+    public MappingJackson2SmileHttpMessageConverter smileHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2SmileHttpMessageConverter(smileMapper(builder));
+    }
+
+    @Bean
+    @Profile("reactive")
+    public WebFluxConfigurer binaryCodecsConfigurer(ObjectMapper objectMapper, Jackson2ObjectMapperBuilder builder) {
+        ObjectMapper cbor = cborMapper(builder);
+        ObjectMapper smile = smileMapper(builder);
+        return new WebFluxConfigurer() {
+            @Override
+            public void configureHttpMessageCodecs(ServerCodecConfigurer configurer) {
+                configurer.defaultCodecs().jackson2SmileEncoder(new Jackson2SmileEncoder(smile, SMILE, STREAM_SMILE));
+                configurer.defaultCodecs().jackson2SmileDecoder(new Jackson2SmileDecoder(smile, SMILE, STREAM_SMILE));
+                // Для CBOR нет слота среди встроенных кодеков, а пользовательские идут раньше них:
+                // JSON регистрируется первым, чтобы Accept: */* по-прежнему получал JSON
+                configurer.customCodecs().register(new Jackson2JsonEncoder(objectMapper));
+                configurer.customCodecs().register(new BufferingCborEncoder(cbor));
+                configurer.customCodecs().register(new Jackson2CborDecoder(cbor, MediaType.APPLICATION_CBOR));
+            }
+        };
+    }
+
+    /**
+     * Jackson2CborEncoder умеет только encodeValue, а сервер WebFlux пишет тело через encode.
+     * Mono кодируется как одно значение, Flux собирается в список: потоковой записи CBOR нет.
+     */
+    static final class BufferingCborEncoder extends Jackson2CborEncoder {
+        BufferingCborEncoder(ObjectMapper mapper) {
+            super(mapper, MediaType.APPLICATION_CBOR);
+        }
+
+        @Override
+        public Flux<DataBuffer> encode(Publisher<?> inputStream, DataBufferFactory bufferFactory,
+                                       ResolvableType elementType, MimeType mimeType, Map<String, Object> hints) {
+            if (inputStream instanceof Mono<?> mono) {
+                return mono.map(value -> encodeValue(value, bufferFactory, elementType, mimeType, hints)).flux();
+            }
+            ResolvableType listType = ResolvableType.forClassWithGenerics(List.class, elementType);
+            return Flux.from(inputStream).collectList()
+                    .map(list -> encodeValue(list, bufferFactory, listType, mimeType, hints))
+                    .flux();
+        }
+    }
+
+    private static ObjectMapper cborMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.factory(new CBORFactory()).build();
+    }
+
+    private static ObjectMapper smileMapper(Jackson2ObjectMapperBuilder builder) {
+        return builder.factory(new SmileFactory()).build();
+    }
+}
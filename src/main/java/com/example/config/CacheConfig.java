@@ -0,0 +1,14 @@
+package com.example.config;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Кэш карточек пользователей. Размер, TTL и сбор статистики задаются
+ * через spring.cache.caffeine.spec, отключается через spring.cache.type=none.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+    public static final String USERS_CACHE = "users";
+}
@@ -0,0 +1,26 @@
+package com.example.config;
+
+import com.example.controller.ConcurrencyLimitInterceptor;
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Подключает {@link ConcurrencyLimitInterceptor} к API пользователей. Actuator
+ * (health, metrics) через него не проходит и отвечает и под перегрузкой.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty(name = "app.users.concurrency.enabled", matchIfMissing = true)
+@RequiredArgsConstructor
+public class ConcurrencyLimitConfig implements WebMvcConfigurer {
+    private final ConcurrencyLimitInterceptor concurrencyLimitInterceptor;
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(concurrencyLimitInterceptor).addPathPatterns("/api/users/**");
+    }
+}
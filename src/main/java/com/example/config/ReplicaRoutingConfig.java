@@ -0,0 +1,101 @@
+package com.example.config;
+
+import com.example.datasource.PrimaryReadPinning;
+import com.example.datasource.ReplicaDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Чтение с реплик: включается заданием app.datasource.replicas.urls.
+ * <p>
+ * Основной DataSource — LazyConnectionDataSourceProxy над primary: физическое
+ * соединение берётся только на первом запросе, когда уже известно, что транзакция
+ * {@code readOnly}, и такие транзакции уходят в {@link ReplicaDataSource}.
+ * Записи и чтения внутри пишущих транзакций остаются на primary.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty("app.datasource.replicas.urls")
+public class ReplicaRoutingConfig {
+    static final String HEALTHY_REPLICAS_METRIC = "datasource.replicas.healthy";
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+        return dataSource;
+    }
+
+    @Bean
+    public ReplicaDataSource replicaDataSource(
+            HikariDataSource primaryDataSource,
+            MeterRegistry meterRegistry,
+            @Value("${app.datasource.replicas.urls}") List<String> urls,
+            @Value("${app.datasource.replicas.username:${spring.datasource.username:}}") String username,
+            @Value("${app.datasource.replicas.password:${spring.datasource.password:}}") String password,
+            @Value("${app.datasource.replicas.maximum-pool-size:${spring.datasource.hikari.maximum-pool-size:10}}")
+            int maximumPoolSize,
+            @Value("${app.datasource.replicas.connection-timeout:PT2S}") Duration connectionTimeout) {
+        List<HikariDataSource> replicas = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource replica = new HikariDataSource();
+            replica.setPoolName("replica-" + (i + 1));
+            replica.setJdbcUrl(urls.get(i));
+            replica.setUsername(username);
+            replica.setPassword(password);
+            replica.setMaximumPoolSize(maximumPoolSize);
+            replica.setConnectionTimeout(connectionTimeout.toMillis());
+            replica.setReadOnly(true);
+            // Недоступная при старте реплика не должна мешать запуску: её отсеет проверка
+            replica.setInitializationFailTimeout(-1);
+            replica.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            replicas.add(replica);
+        }
+        ReplicaDataSource dataSource = new ReplicaDataSource(primaryDataSource, replicas,
+                (int) Math.max(1, connectionTimeout.toSeconds()));
+        meterRegistry.gauge(HEALTHY_REPLICAS_METRIC, dataSource, ReplicaDataSource::getHealthyCount);
+        return dataSource;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaDataSource replicaDataSource) {
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primaryDataSource);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        return dataSource;
+    }
+
+    @Bean
+    public PrimaryReadPinning primaryReadPinning(
+            @Value("${app.datasource.replicas.pin-after-write:PT5S}") Duration window) {
+        return new PrimaryReadPinning(window);
+    }
+
+    @Bean
+    public WebMvcConfigurer primaryReadPinningConfigurer(PrimaryReadPinning primaryReadPinning) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(InterceptorRegistry registry) {
+                registry.addInterceptor(primaryReadPinning).addPathPatterns("/api/**");
+            }
+        };
+    }
+}
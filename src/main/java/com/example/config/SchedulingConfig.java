@@ -0,0 +1,12 @@
+package com.example.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Фоновые задачи (@Scheduled), например сверка статистики пользователей с таблицей.
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
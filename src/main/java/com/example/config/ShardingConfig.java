@@ -0,0 +1,82 @@
+package com.example.config;
+
+import com.example.datasource.ShardRoutingDataSource;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.flyway.FlywayMigrationStrategy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Шардирование пользователей: включается заданием app.sharding.urls (шард 0 — первый).
+ * <p>
+ * Основной DataSource — LazyConnectionDataSourceProxy над {@link ShardRoutingDataSource}:
+ * шард выбирается при первом запросе, а не при открытии транзакции.
+ * Миграции Flyway применяются к каждому шарду. С репликами
+ * (app.datasource.replicas.urls) не совмещается.
+ */
+@Configuration
+@Profile("!reactive")
+@ConditionalOnProperty("app.sharding.urls")
+public class ShardingConfig {
+
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(
+            MeterRegistry meterRegistry,
+            @Value("${app.sharding.urls}") List<String> urls,
+            @Value("${app.sharding.username:${spring.datasource.username:}}") String username,
+            @Value("${app.sharding.password:${spring.datasource.password:}}") String password,
+            @Value("${app.sharding.maximum-pool-size:${spring.datasource.hikari.maximum-pool-size:10}}")
+            int maximumPoolSize,
+            @Value("${app.sharding.connection-timeout:${spring.datasource.hikari.connection-timeout:30000}}")
+            Duration connectionTimeout,
+            @Value("${app.datasource.replicas.urls:}") String replicaUrls) {
+        if (!replicaUrls.isBlank()) {
+            throw new IllegalStateException("app.sharding.urls и app.datasource.replicas.urls не совмещаются");
+        }
+        List<DataSource> shards = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariDataSource shard = new HikariDataSource();
+            shard.setPoolName("shard-" + i);
+            shard.setJdbcUrl(urls.get(i));
+            shard.setUsername(username);
+            shard.setPassword(password);
+            shard.setMaximumPoolSize(maximumPoolSize);
+            shard.setConnectionTimeout(connectionTimeout.toMillis());
+            shard.setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(meterRegistry));
+            shards.add(shard);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource shardRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(shardRoutingDataSource);
+    }
+
+    @Bean
+    public FlywayMigrationStrategy shardedMigrationStrategy(ShardRoutingDataSource shardRoutingDataSource) {
+        return flyway -> {
+            for (DataSource shard : shardRoutingDataSource.getShards()) {
+                Flyway.configure()
+                        .configuration(flyway.getConfiguration())
+                        .dataSource(shard)
+                        .load()
+                        .migrate();
+            }
+        };
+    }
+}
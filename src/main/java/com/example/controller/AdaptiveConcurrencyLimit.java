@@ -0,0 +1,73 @@
+package com.example.controller;
+
+/**
+ * Адаптивный предел одновременных запросов (AIMD). Пока ответы укладываются
+ * в порог задержки и предел действительно используется, он растёт примерно
+ * на единицу за «окно» из limit завершений; медленный ответ или 503 от БД
+ * умножает его на backoff-ratio, но не чаще раза за порог задержки, чтобы одна
+ * пачка медленных ответов не обрушила предел до минимума.
+ */
+final class AdaptiveConcurrencyLimit {
+    private final int minLimit;
+    private final int maxLimit;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    private double limit;
+    private int inFlight;
+    private long lastDecrease;
+
+    AdaptiveConcurrencyLimit(int initialLimit, int minLimit, int maxLimit,
+                             long latencyThresholdNanos, double backoffRatio) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Нужно 1 <= min-limit <= initial-limit <= max-limit");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoff-ratio должен быть в (0, 1)");
+        }
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.latencyThresholdNanos = latencyThresholdNanos;
+        this.backoffRatio = backoffRatio;
+        this.limit = initialLimit;
+        this.lastDecrease = System.nanoTime() - latencyThresholdNanos;
+    }
+
+    /**
+     * Занимает место, если предел не исчерпан; иначе запрос надо отбросить сразу.
+     */
+    synchronized boolean tryAcquire() {
+        if (inFlight >= (int) limit) {
+            return false;
+        }
+        inFlight++;
+        return true;
+    }
+
+    /**
+     * Освобождает место, занятое {@link #tryAcquire()}, и подстраивает предел.
+     *
+     * @param overloaded ответ говорит о перегрузке (например, 503 из-за пула соединений)
+     */
+    synchronized void release(long latencyNanos, boolean overloaded) {
+        int used = inFlight--;
+        long now = System.nanoTime();
+        if (overloaded || latencyNanos > latencyThresholdNanos) {
+            if (now - lastDecrease >= latencyThresholdNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+                lastDecrease = now;
+            }
+        } else if (used * 2 >= (int) limit) {
+            // Пока занята меньшая часть предела, задержка ничего не говорит о его запасе
+            limit = Math.min(maxLimit, limit + 1 / limit);
+        }
+    }
+
+    synchronized int getLimit() {
+        return (int) limit;
+    }
+
+    synchronized int getInFlight() {
+        return inFlight;
+    }
+}
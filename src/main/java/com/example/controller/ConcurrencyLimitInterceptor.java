@@ -0,0 +1,105 @@
+package com.example.controller;
+
+import com.example.exception.ServiceUnavailableException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Сброс нагрузки перед {@link UserController}: методы с {@link ConcurrencyLimited}
+ * занимают место в адаптивном пределе своего класса стоимости, а сверх предела
+ * сразу получают 503 с Retry-After, не дожидаясь соединения с БД. Точечные чтения
+ * и тяжёлые операции ограничиваются раздельно, чтобы медленные списки не вытесняли
+ * дешёвые getUser. Задержка меряется от preHandle до afterCompletion.
+ */
+@Component
+@Profile("!reactive")
+@ConditionalOnProperty(name = "app.users.concurrency.enabled", matchIfMissing = true)
+public class ConcurrencyLimitInterceptor implements HandlerInterceptor {
+    static final String LIMIT_METRIC = "user.api.concurrency.limit";
+    static final String IN_FLIGHT_METRIC = "user.api.concurrency.in-flight";
+    static final String REJECTED_METRIC = "user.api.concurrency.rejected";
+
+    private static final String ACQUIRED_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".acquired";
+    private static final String STARTED_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".started";
+
+    private final Map<ConcurrencyLimited.Cost, AdaptiveConcurrencyLimit> limits =
+            new EnumMap<>(ConcurrencyLimited.Cost.class);
+    private final Map<ConcurrencyLimited.Cost, Counter> rejected = new EnumMap<>(ConcurrencyLimited.Cost.class);
+
+    public ConcurrencyLimitInterceptor(
+            MeterRegistry meterRegistry,
+            @Value("${app.users.concurrency.point-read.initial-limit:40}") int pointInitialLimit,
+            @Value("${app.users.concurrency.point-read.min-limit:4}") int pointMinLimit,
+            @Value("${app.users.concurrency.point-read.max-limit:200}") int pointMaxLimit,
+            @Value("${app.users.concurrency.point-read.latency-threshold:PT0.1S}") Duration pointLatencyThreshold,
+            @Value("${app.users.concurrency.heavy.initial-limit:10}") int heavyInitialLimit,
+            @Value("${app.users.concurrency.heavy.min-limit:2}") int heavyMinLimit,
+            @Value("${app.users.concurrency.heavy.max-limit:40}") int heavyMaxLimit,
+            @Value("${app.users.concurrency.heavy.latency-threshold:PT2S}") Duration heavyLatencyThreshold,
+            @Value("${app.users.concurrency.backoff-ratio:0.9}") double backoffRatio) {
+        limits.put(ConcurrencyLimited.Cost.POINT_READ, new AdaptiveConcurrencyLimit(pointInitialLimit,
+                pointMinLimit, pointMaxLimit, pointLatencyThreshold.toNanos(), backoffRatio));
+        limits.put(ConcurrencyLimited.Cost.HEAVY, new AdaptiveConcurrencyLimit(heavyInitialLimit,
+                heavyMinLimit, heavyMaxLimit, heavyLatencyThreshold.toNanos(), backoffRatio));
+        limits.forEach((cost, limit) -> {
+            String tag = cost.name().toLowerCase(Locale.ROOT);
+            Gauge.builder(LIMIT_METRIC, limit, AdaptiveConcurrencyLimit::getLimit)
+                    .tag("cost", tag)
+                    .register(meterRegistry);
+            Gauge.builder(IN_FLIGHT_METRIC, limit, AdaptiveConcurrencyLimit::getInFlight)
+                    .tag("cost", tag)
+                    .register(meterRegistry);
+            rejected.put(cost, meterRegistry.counter(REJECTED_METRIC, "cost", tag));
+        });
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        if (!(handler instanceof HandlerMethod method)) {
+            return true;
+        }
+        ConcurrencyLimited annotation = method.getMethodAnnotation(ConcurrencyLimited.class);
+        if (annotation == null) {
+            return true;
+        }
+        AdaptiveConcurrencyLimit limit = limits.get(annotation.value());
+        if (!limit.tryAcquire()) {
+            rejected.get(annotation.value()).increment();
+            throw new ServiceUnavailableException("Сервер перегружен, повторите запрос позже");
+        }
+        request.setAttribute(ACQUIRED_ATTRIBUTE, limit);
+        request.setAttribute(STARTED_ATTRIBUTE, System.nanoTime());
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response,
+                                Object handler, Exception ex) {
+        if (!(request.getAttribute(ACQUIRED_ATTRIBUTE) instanceof AdaptiveConcurrencyLimit limit)) {
+            return;
+        }
+        request.removeAttribute(ACQUIRED_ATTRIBUTE);
+        long latency = System.nanoTime() - (long) request.getAttribute(STARTED_ATTRIBUTE);
+        // 503 после захода в предел — это нехватка соединений с БД, а не наш отказ
+        limit.release(latency, response.getStatus() == HttpStatus.SERVICE_UNAVAILABLE.value());
+    }
+
+    AdaptiveConcurrencyLimit limit(ConcurrencyLimited.Cost cost) {
+        return limits.get(cost);
+    }
+}
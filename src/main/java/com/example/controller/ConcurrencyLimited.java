@@ -0,0 +1,24 @@
+package com.example.controller;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Метод контроллера проходит через адаптивный предел одновременных запросов
+ * своего класса стоимости (см. {@link ConcurrencyLimitInterceptor}). Не ставится
+ * на асинхронные ответы (SSE, потоковая выгрузка): они держат место слишком долго.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ConcurrencyLimited {
+    Cost value();
+
+    enum Cost {
+        /** Чтение одного пользователя по ключу. */
+        POINT_READ,
+        /** Списки, поиск и записи. */
+        HEAVY
+    }
+}
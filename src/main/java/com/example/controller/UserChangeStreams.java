@@ -0,0 +1,140 @@
+package com.example.controller;
+
+import com.example.dto.UserChangeDto;
+import com.example.exception.GoneException;
+import com.example.exception.TooManyRequestsException;
+import com.example.service.UserChangeFeed;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * SSE-подписки на ленту изменений. У каждой подписки свой виртуальный поток:
+ * он забирает пачки из {@link UserChangeFeed} и отправляет каждую одним событием
+ * «changes» с id = смещение после пачки, так что переподключившийся EventSource
+ * продолжает с Last-Event-ID. Без новых событий поток спит poll-interval и изредка
+ * шлёт комментарий, чтобы заметить отключившегося клиента. Число подписок
+ * ограничено app.users.changes.max-subscribers, сверх — 429. Устаревшее смещение
+ * отклоняется с 410 при подключении, а у открытой подписки — событием «reset».
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+public class UserChangeStreams {
+    static final String SUBSCRIBERS_METRIC = "user.changes.subscribers";
+    static final String CHANGES_EVENT = "changes";
+    static final String RESET_EVENT = "reset";
+
+    private final UserChangeFeed feed;
+    private final Duration pollInterval;
+    private final Duration heartbeatInterval;
+    private final Duration streamTimeout;
+    private final int maxSubscribers;
+    private final Set<Subscription> subscriptions = ConcurrentHashMap.newKeySet();
+
+    public UserChangeStreams(UserChangeFeed feed,
+                             MeterRegistry meterRegistry,
+                             @Value("${app.users.changes.poll-interval:PT1S}") Duration pollInterval,
+                             @Value("${app.users.changes.heartbeat-interval:PT15S}") Duration heartbeatInterval,
+                             @Value("${app.users.changes.stream-timeout:PT10M}") Duration streamTimeout,
+                             @Value("${app.users.changes.max-subscribers:1000}") int maxSubscribers) {
+        this.feed = feed;
+        this.pollInterval = pollInterval;
+        this.heartbeatInterval = heartbeatInterval;
+        this.streamTimeout = streamTimeout;
+        this.maxSubscribers = maxSubscribers;
+        meterRegistry.gaugeCollectionSize(SUBSCRIBERS_METRIC, List.of(), subscriptions);
+    }
+
+    public SseEmitter open(String offset) {
+        String start = feed.startOffset(offset);
+        if (subscriptions.size() >= maxSubscribers) {
+            throw new TooManyRequestsException("Слишком много подписчиков ленты изменений");
+        }
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        Subscription subscription = new Subscription(emitter, start);
+        subscriptions.add(subscription);
+        emitter.onCompletion(subscription::stop);
+        emitter.onTimeout(subscription::stop);
+        emitter.onError(e -> subscription.stop());
+        Thread.ofVirtual().name("user-changes").start(subscription::run);
+        return emitter;
+    }
+
+    @PreDestroy
+    public void close() {
+        for (Subscription subscription : subscriptions) {
+            subscription.stop();
+            subscription.emitter.complete();
+        }
+    }
+
+    private final class Subscription {
+        private final SseEmitter emitter;
+        private String offset;
+        private volatile boolean active = true;
+
+        private Subscription(SseEmitter emitter, String offset) {
+            this.emitter = emitter;
+            this.offset = offset;
+        }
+
+        private void run() {
+            long lastSent = System.nanoTime();
+            try {
+                while (active) {
+                    List<UserChangeDto> batch;
+                    try {
+                        batch = feed.poll(offset);
+                    } catch (GoneException e) {
+                        emitter.send(SseEmitter.event().name(RESET_EVENT).data(e.getMessage()));
+                        emitter.complete();
+                        return;
+                    } catch (RuntimeException e) {
+                        log.warn("Не удалось прочитать ленту изменений после {}", offset, e);
+                        batch = List.of();
+                    }
+                    if (!batch.isEmpty()) {
+                        offset = batch.get(batch.size() - 1).getOffset();
+                        emitter.send(SseEmitter.event()
+                                .name(CHANGES_EVENT)
+                                .id(offset)
+                                .data(batch, MediaType.APPLICATION_JSON));
+                        lastSent = System.nanoTime();
+                        if (batch.size() == feed.getBatchSize()) {
+                            // Клиент отстаёт: следующая пачка уже есть
+                            continue;
+                        }
+                    } else if (System.nanoTime() - lastSent >= heartbeatInterval.toNanos()) {
+                        emitter.send(SseEmitter.event().comment("keep-alive"));
+                        lastSent = System.nanoTime();
+                    }
+                    Thread.sleep(pollInterval);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException | IllegalStateException e) {
+                // Клиент отключился или ответ уже завершён; emitter закроет контейнер
+            } finally {
+                subscriptions.remove(this);
+            }
+        }
+
+        // Поток не прерывается: он может быть посреди запроса к БД; выйдет после текущего шага
+        private void stop() {
+            active = false;
+            subscriptions.remove(this);
+        }
+    }
+}
@@ -1,48 +1,302 @@
 package com.example.controller;
 
+import com.example.dto.UserBatchResultDto;
+import com.example.dto.UserBulkDeleteDto;
+import com.example.dto.UserBulkDeleteResultDto;
 import com.example.dto.UserCreateDto;
 import com.example.dto.UserDto;
+import com.example.dto.UserIngestStatusDto;
+import com.example.dto.UserLookupDto;
+import com.example.dto.UserLookupResultDto;
+import com.example.dto.UserPageDto;
+import com.example.dto.UserPatchDto;
+import com.example.dto.UserSearchDto;
+import com.example.dto.UserStatsDto;
+import com.example.datasource.ReadOnlyEndpoint;
+import com.example.exception.PreconditionFailedException;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.util.MimeTypeUtils;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import com.example.service.UserIngestQueue;
 import com.example.service.UserService;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
 import java.util.List;
 
 @Validated
 @RestController
+@Profile("!reactive")
 @RequestMapping("/api/users")
 @RequiredArgsConstructor
 public class UserController {
+    private static final int EXPORT_FLUSH_INTERVAL = 500;
+
+    private static final String INGEST_STATUS_PATH = "/api/users/ingest/";
+    private static final String LAST_EVENT_ID_HEADER = "Last-Event-ID";
+
+    // Форматы в порядке конвертеров: JSON первый, его получает Accept: */*
+    private static final List<MediaType> FORMATS = List.of(
+            MediaType.APPLICATION_JSON,
+            MediaType.APPLICATION_CBOR,
+            MediaType.parseMediaType("application/x-jackson-smile"));
 
     private final UserService userService;
+    private final UserIngestQueue ingestQueue;
+    private final UserChangeStreams changeStreams;
+    private final ObjectMapper objectMapper;
+
+    // JSON, CBOR и Smile отдаются с одного URL: кэши должны различать ответы по Accept,
+    // в том числе 304, которые возвращаются до сериализации тела
+    @ModelAttribute
+    void varyByAccept(HttpServletResponse response) {
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+    }
 
     @PostMapping
-    @ResponseStatus(HttpStatus.CREATED)
-    public UserDto createUser(@Valid @RequestBody UserCreateDto userCreateDTO) {
-        return userService.createUser(userCreateDTO);
+    @ConcurrencyLimited(ConcurrencyLimited.Cost.HEAVY)
+    public ResponseEntity<?> createUser(@Valid @RequestBody UserCreateDto userCreateDTO,
+                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        if (ingestQueue.isEnabled()) {
+            UserIngestStatusDto status = ingestQueue.submit(userCreateDTO);
+            return ResponseEntity.accepted()
+                    .location(URI.create(INGEST_STATUS_PATH + status.getId()))
+                    .body(status);
+        }
+        UserDto user = userService.createUser(userCreateDTO);
+        return ResponseEntity.status(HttpStatus.CREATED).eTag(etag(user.getVersion(), accept)).body(user);
+    }
+
+    @GetMapping("/ingest/{trackingId}")
+    public UserIngestStatusDto getIngestStatus(@PathVariable String trackingId) {
+        return ingestQueue.getStatus(trackingId);
+    }
+
+    @PostMapping("/batch")
+    @ConcurrencyLimited(ConcurrencyLimited.Cost.HEAVY)
+    public List<UserBatchResultDto> createUsers(@RequestBody List<UserCreateDto> userCreateDTOs) {
+        return userService.createUsers(userCreateDTOs);
     }
 
     @GetMapping("/{id}")
-    public UserDto getUser(@PathVariable Integer id) {
-        return userService.getUserById(id);
+    @ConcurrencyLimited(ConcurrencyLimited.Cost.POINT_READ)
+    public ResponseEntity<UserDto> getUser(@PathVariable Integer id, WebRequest request) {
+        String accept = request.getHeader(HttpHeaders.ACCEPT);
+        // Опрашивающему клиенту хватает версии: 304 отдаётся без загрузки и сериализации UserDto
+        if (request.getHeader(HttpHeaders.IF_NONE_MATCH) != null
+                && request.checkNotModified(etag(userService.getUserVersion(id), accept))) {
+            return null;
+        }
+        UserDto user = userService.getUserById(id);
+        return ResponseEntity.ok().eTag(etag(user.getVersion(), accept)).body(user);
     }
 
     @GetMapping
-    public List<UserDto> getAllUsers() {
-        return userService.getAllUsers();
+    @ConcurrencyLimited(ConcurrencyLimited.Cost.HEAVY)
+    public ResponseEntity<UserPageDto> getAllUsers(@RequestParam(required = false) String cursor,
+                                                   @RequestParam(required = false) Integer limit,
+                                                   @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        UserPageDto page = userService.getAllUsers(cursor, limit);
+        // При совпадении с If-None-Match Spring ответит 304 и не будет сериализовать тело
+        return ResponseEntity.ok().eTag(pageEtag(page, accept)).body(page);
+    }
+
+    /**
+     * Пакетная выборка по id (?ids=1,2,3) вместо отдельного GET на каждого пользователя.
+     */
+    @GetMapping(params = "ids")
+    @ConcurrencyLimited(ConcurrencyLimited.Cost.HEAVY)
+    public UserLookupResultDto getUsersByIds(@RequestParam List<Integer> ids) {
+        return userService.getUsersByIds(ids);
+    }
+
+    // То же для списков, которые не помещаются в URL
+    @PostMapping("/lookup")
+    @ReadOnlyEndpoint
+    @ConcurrencyLimited(ConcurrencyLimited.Cost.HEAVY)
+    public UserLookupResultDto lookupUsers(@RequestBody UserLookupDto request) {
+        return userService.getUsersByIds(request.getIds());
+    }
+
+    @GetMapping("/search")
+    @ConcurrencyLimited(ConcurrencyLimited.Cost.HEAVY)
+    public ResponseEntity<UserPageDto> searchUsers(UserSearchDto criteria,
+                                                   @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        UserPageDto page = userService.searchUsers(criteria);
+        return ResponseEntity.ok().eTag(pageEtag(page, accept)).body(page);
+    }
+
+    @GetMapping("/stats")
+    public UserStatsDto getStats() {
+        return userService.getStats();
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> exportUsers() {
+        StreamingResponseBody body = out -> {
+            try (JsonGenerator generator = objectMapper.getFactory().createGenerator(out)) {
+                generator.setRootValueSeparator(null);
+                long[] written = {0};
+                userService.exportUsers(user -> {
+                    try {
+                        generator.writeObject(user);
+                        generator.writeRaw('\n');
+                        if (++written[0] % EXPORT_FLUSH_INTERVAL == 1) {
+                            generator.flush();
+                        }
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .body(body);
+    }
+
+    /**
+     * Лента изменений (SSE). Переподключившийся EventSource присылает Last-Event-ID —
+     * смещение после последней полученной пачки; оно важнее since.
+     */
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamChanges(@RequestParam(required = false) String since,
+                                    @RequestHeader(value = LAST_EVENT_ID_HEADER, required = false) String lastEventId) {
+        return changeStreams.open(lastEventId != null ? lastEventId : since);
     }
 
     @PutMapping("/{id}")
-    public UserDto updateUser(@PathVariable("id") Integer id, @RequestBody UserCreateDto userCreateDTO) {
-        return userService.updateUser(id, userCreateDTO);
+    @ConcurrencyLimited(ConcurrencyLimited.Cost.HEAVY)
+    public ResponseEntity<UserDto> updateUser(@PathVariable("id") Integer id,
+                                              @RequestBody UserCreateDto userCreateDTO,
+                                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        UserDto user = userService.updateUser(id, userCreateDTO, expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(etag(user.getVersion(), accept)).body(user);
+    }
+
+    @PatchMapping("/{id}")
+    @ConcurrencyLimited(ConcurrencyLimited.Cost.HEAVY)
+    public ResponseEntity<UserDto> patchUser(@PathVariable("id") Integer id,
+                                             @Valid @RequestBody UserPatchDto userPatchDTO,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
+                                             @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        UserDto user = userService.patchUser(id, userPatchDTO, expectedVersion(ifMatch));
+        return ResponseEntity.ok().eTag(etag(user.getVersion(), accept)).body(user);
     }
 
     @DeleteMapping("/{id}")
+    @ConcurrencyLimited(ConcurrencyLimited.Cost.HEAVY)
     @ResponseStatus(HttpStatus.NO_CONTENT)
     public void deleteUser(@PathVariable("id") Integer id) {
         userService.deleteUser(id);
     }
+
+    @DeleteMapping
+    @ConcurrencyLimited(ConcurrencyLimited.Cost.HEAVY)
+    public UserBulkDeleteResultDto deleteUsers(@RequestBody UserBulkDeleteDto request) {
+        return userService.deleteUsers(request);
+    }
+
+    /**
+     * Сильный ETag различает байтовые представления: для CBOR и Smile к версии
+     * добавляется подтип формата ("3-cbor"), JSON сохраняет прежний вид ("3").
+     */
+    static String etag(Integer version, String accept) {
+        return "\"" + version + formatSuffix(accept) + "\"";
+    }
+
+    static String pageEtag(UserPageDto page, String accept) {
+        long hash = page.getNext() != null ? 1 : 0;
+        for (UserDto user : page.getItems()) {
+            hash = mix(hash, user.getId());
+            hash = mix(hash, user.getVersion());
+        }
+        return "\"" + Long.toHexString(hash) + formatSuffix(accept) + "\"";
+    }
+
+    private static String formatSuffix(String accept) {
+        MediaType format = negotiatedFormat(accept);
+        return format.equals(MediaType.APPLICATION_JSON) ? "" : "-" + format.getSubtype();
+    }
+
+    /**
+     * Тот же выбор, что делает AbstractMessageConverterMethodProcessor: Accept сортируется
+     * по качеству и специфичности, каждый тип сопоставляется с форматами в порядке
+     * конвертеров, из пересечений берётся первый конкретный тип после той же сортировки.
+     */
+    static MediaType negotiatedFormat(String accept) {
+        if (accept == null || accept.isBlank()) {
+            return MediaType.APPLICATION_JSON;
+        }
+        List<MediaType> acceptable;
+        try {
+            acceptable = new ArrayList<>(MediaType.parseMediaTypes(accept));
+        } catch (InvalidMediaTypeException e) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MimeTypeUtils.sortBySpecificity(acceptable);
+        List<MediaType> candidates = new ArrayList<>();
+        for (MediaType requested : acceptable) {
+            for (MediaType format : FORMATS) {
+                if (requested.isCompatibleWith(format)) {
+                    candidates.add(mostSpecific(requested, format));
+                }
+            }
+        }
+        MimeTypeUtils.sortBySpecificity(candidates);
+        for (MediaType candidate : candidates) {
+            if (candidate.isConcrete()) {
+                return FORMATS.stream()
+                        .filter(format -> format.isCompatibleWith(candidate))
+                        .findFirst()
+                        .orElse(MediaType.APPLICATION_JSON);
+            }
+        }
+        return MediaType.APPLICATION_JSON;
+    }
+
+    private static MediaType mostSpecific(MediaType requested, MediaType format) {
+        MediaType produced = format.copyQualityValue(requested);
+        return requested.isLessSpecific(produced) ? produced : requested;
+    }
+
+    private static long mix(long hash, int value) {
+        hash = (hash ^ value) * 0x9e3779b97f4a7c15L;
+        return hash ^ (hash >>> 32);
+    }
+
+    private static Integer expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.length() < 3 || !tag.startsWith("\"") || !tag.endsWith("\"")) {
+            throw new PreconditionFailedException("Некорректный If-Match: " + ifMatch);
+        }
+        String value = tag.substring(1, tag.length() - 1);
+        // Версия одна для всех форматов, суффикс представления ("3-cbor") для If-Match не важен
+        int suffix = value.indexOf('-');
+        try {
+            return Integer.valueOf(suffix > 0 ? value.substring(0, suffix) : value);
+        } catch (NumberFormatException e) {
+            throw new PreconditionFailedException("Некорректный If-Match: " + ifMatch);
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package com.example.datasource;
+
+import jakarta.servlet.http.Cookie;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseCookie;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.util.WebUtils;
+
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Закрепляет чтения за primary на время записи и в течение окна после неё:
+ * реплика может отставать, и клиент не должен увидеть состояние до своей же записи.
+ * Окно хранится у клиента: запись ставит cookie с моментом его окончания, и любой
+ * экземпляр сервиса за балансировщиком закрепляет чтения с этим cookie. Чтения
+ * через POST помечаются {@link ReadOnlyEndpoint} и записью не считаются.
+ */
+public class PrimaryReadPinning implements AsyncHandlerInterceptor {
+    public static final String PIN_COOKIE = "primary-pin-until";
+
+    private static final ThreadLocal<Boolean> PINNED = new ThreadLocal<>();
+
+    private final Duration window;
+
+    public PrimaryReadPinning(Duration window) {
+        this.window = window;
+    }
+
+    public static boolean isPinned() {
+        return PINNED.get() != null;
+    }
+
+    /**
+     * Выполняет действие с чтением из primary вне зависимости от записей клиента:
+     * для результатов, которые переживают запрос (общий кэш).
+     */
+    public static <T> T onPrimary(Supplier<T> action) {
+        if (isPinned()) {
+            return action.get();
+        }
+        pin();
+        try {
+            return action.get();
+        } finally {
+            unpin();
+        }
+    }
+
+    static void pin() {
+        PINNED.set(Boolean.TRUE);
+    }
+
+    static void unpin() {
+        PINNED.remove();
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        long now = System.currentTimeMillis();
+        if (isWrite(request, handler)) {
+            pin();
+            // Cookie ставится до обработки: после записи тела заголовки уже не добавить.
+            // Неудачная запись тоже закрепляет клиента на окно — это лишь лишние чтения с primary
+            ResponseCookie cookie = ResponseCookie.from(PIN_COOKIE, Long.toString(now + window.toMillis()))
+                    .path("/")
+                    .maxAge(window)
+                    .httpOnly(true)
+                    .sameSite("Lax")
+                    .build();
+            response.addHeader(HttpHeaders.SET_COOKIE, cookie.toString());
+        } else if (now < pinnedUntil(request)) {
+            pin();
+        }
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) {
+        unpin();
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response,
+                                               Object handler) {
+        unpin();
+    }
+
+    private static boolean isWrite(HttpServletRequest request, Object handler) {
+        if (handler instanceof HandlerMethod method && method.hasMethodAnnotation(ReadOnlyEndpoint.class)) {
+            return false;
+        }
+        return switch (request.getMethod()) {
+            case "GET", "HEAD", "OPTIONS" -> false;
+            default -> true;
+        };
+    }
+
+    private static long pinnedUntil(HttpServletRequest request) {
+        Cookie cookie = WebUtils.getCookie(request, PIN_COOKIE);
+        if (cookie == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(cookie.getValue());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
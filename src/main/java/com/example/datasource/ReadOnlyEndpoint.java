@@ -0,0 +1,16 @@
+package com.example.datasource;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Обработчик только читает, хотя вызывается не безопасным методом (например, POST
+ * со списком id в теле). {@link PrimaryReadPinning} не считает такой запрос записью:
+ * он не закрепляется за primary сам и не закрепляет последующие чтения клиента.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadOnlyEndpoint {
+}
@@ -0,0 +1,107 @@
+package com.example.datasource;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Источник соединений для read-only транзакций: реплики по кругу, пропуская
+ * недоступные. Если клиент закреплён за primary (см. {@link PrimaryReadPinning})
+ * или живых реплик нет, соединение берётся из primary.
+ * <p>
+ * Реплика помечается недоступной при ошибке получения соединения и возвращается
+ * в ротацию только после успешной периодической проверки.
+ */
+@Slf4j
+public class ReplicaDataSource extends AbstractDataSource implements AutoCloseable {
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final int validationTimeoutSeconds;
+    private final AtomicInteger next = new AtomicInteger();
+
+    public ReplicaDataSource(DataSource primary, List<? extends DataSource> replicas, int validationTimeoutSeconds) {
+        this.primary = primary;
+        this.replicas = replicas.stream().map(Replica::new).toList();
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return connect(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return connect(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    private Connection connect(Connector connector) throws SQLException {
+        if (PrimaryReadPinning.isPinned()) {
+            return connector.connect(primary);
+        }
+        int size = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), size);
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get((start + i) % size);
+            if (!replica.healthy) {
+                continue;
+            }
+            try {
+                return connector.connect(replica.dataSource);
+            } catch (SQLException e) {
+                replica.healthy = false;
+                log.warn("Реплика {} недоступна, исключена из ротации: {}", replica.dataSource, e.getMessage());
+            }
+        }
+        return connector.connect(primary);
+    }
+
+    @Scheduled(fixedDelayString = "${app.datasource.replicas.health-check-interval:PT10S}")
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            boolean healthy;
+            try (Connection connection = replica.dataSource.getConnection()) {
+                healthy = connection.isValid(validationTimeoutSeconds);
+            } catch (SQLException e) {
+                healthy = false;
+            }
+            if (healthy != replica.healthy) {
+                log.info("Реплика {} {}", replica.dataSource, healthy ? "снова в ротации" : "исключена из ротации");
+            }
+            replica.healthy = healthy;
+        }
+    }
+
+    public int getHealthyCount() {
+        return (int) replicas.stream().filter(replica -> replica.healthy).count();
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    @FunctionalInterface
+    private interface Connector {
+        Connection connect(DataSource dataSource) throws SQLException;
+    }
+
+    private static final class Replica {
+        private final DataSource dataSource;
+        private volatile boolean healthy = true;
+
+        private Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Выбирает шард по номеру, выставленному в текущем потоке через {@link UserShards}.
+ * Без номера соединение берётся с шарда 0: на нём же живёт users_seq.
+ * Номер читается в момент получения соединения, поэтому снаружи должен стоять
+ * LazyConnectionDataSourceProxy — транзакция, открытая до выбора шарда, не должна занять соединение.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+    private static final ThreadLocal<Integer> CURRENT_SHARD = new ThreadLocal<>();
+
+    private final List<DataSource> shards;
+
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("Нужен хотя бы один шард");
+        }
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public List<DataSource> getShards() {
+        return shards;
+    }
+
+    public static Integer currentShard() {
+        return CURRENT_SHARD.get();
+    }
+
+    static void setCurrentShard(Integer shard) {
+        if (shard == null) {
+            CURRENT_SHARD.remove();
+        } else {
+            CURRENT_SHARD.set(shard);
+        }
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return CURRENT_SHARD.get();
+    }
+
+    public void close() throws Exception {
+        for (DataSource shard : shards) {
+            if (shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
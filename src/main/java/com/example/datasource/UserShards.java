@@ -0,0 +1,147 @@
+package com.example.datasource;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Profile;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+/**
+ * Раскладка пользователей по шардам: шард пользователя — хэш id, шард записи
+ * справочника email — хэш email. Без app.sharding.urls шард один, и все методы
+ * просто выполняют действие в текущем потоке и транзакции.
+ * <p>
+ * Если вызывающий код уже в транзакции, действие на шарде выполняется в новой
+ * транзакции с теми же readOnly и уровнем изоляции: общая транзакция на несколько
+ * баз невозможна, а соединение внешней привязано к другому шарду.
+ */
+@Component
+@Profile("!reactive")
+public class UserShards {
+    private final int count;
+    private final PlatformTransactionManager transactionManager;
+    private final ExecutorService executor;
+
+    @Autowired
+    public UserShards(ObjectProvider<ShardRoutingDataSource> routingDataSource,
+                      ObjectProvider<PlatformTransactionManager> transactionManager) {
+        this(routingDataSource.getIfAvailable(), transactionManager.getIfAvailable());
+    }
+
+    UserShards(ShardRoutingDataSource routingDataSource, PlatformTransactionManager transactionManager) {
+        boolean sharded = routingDataSource != null;
+        this.count = sharded ? routingDataSource.getShardCount() : 1;
+        this.transactionManager = sharded ? transactionManager : null;
+        this.executor = sharded ? Executors.newVirtualThreadPerTaskExecutor() : null;
+    }
+
+    public static UserShards single() {
+        return new UserShards((ShardRoutingDataSource) null, null);
+    }
+
+    public int count() {
+        return count;
+    }
+
+    public boolean isSharded() {
+        return count > 1;
+    }
+
+    public int shardOf(int id) {
+        return Math.floorMod(mix(id), count);
+    }
+
+    public int shardOfEmail(String email) {
+        return Math.floorMod(mix(email.hashCode()), count);
+    }
+
+    public <T> T onShard(int shard, Supplier<T> action) {
+        if (!isSharded()) {
+            return action.get();
+        }
+        return run(shard, inheritedTransaction(), action);
+    }
+
+    /**
+     * Выполняет действие на всех шардах параллельно; результаты — в порядке номеров шардов.
+     */
+    public <T> List<T> onEachShard(IntFunction<T> action) {
+        if (!isSharded()) {
+            return Collections.singletonList(action.apply(0));
+        }
+        TransactionTemplate transaction = inheritedTransaction();
+        List<CompletableFuture<T>> futures = new ArrayList<>(count);
+        for (int shard = 0; shard < count; shard++) {
+            int target = shard;
+            futures.add(CompletableFuture.supplyAsync(
+                    () -> run(target, transaction, () -> action.apply(target)), executor));
+        }
+        List<T> results = new ArrayList<>(count);
+        try {
+            for (CompletableFuture<T> future : futures) {
+                results.add(future.join());
+            }
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+        return results;
+    }
+
+    @PreDestroy
+    public void close() {
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    private <T> T run(int shard, TransactionTemplate transaction, Supplier<T> action) {
+        Integer previous = ShardRoutingDataSource.currentShard();
+        ShardRoutingDataSource.setCurrentShard(shard);
+        try {
+            return transaction != null ? transaction.execute(status -> action.get()) : action.get();
+        } finally {
+            ShardRoutingDataSource.setCurrentShard(previous);
+        }
+    }
+
+    private TransactionTemplate inheritedTransaction() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return null;
+        }
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        transaction.setReadOnly(TransactionSynchronizationManager.isCurrentTransactionReadOnly());
+        Integer isolation = TransactionSynchronizationManager.getCurrentTransactionIsolationLevel();
+        if (isolation != null) {
+            transaction.setIsolationLevel(isolation);
+        }
+        return transaction;
+    }
+
+    // fmix32 из MurmurHash3: соседние id расходятся по разным шардам
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
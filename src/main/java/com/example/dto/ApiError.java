@@ -1,25 +1,32 @@
 package com.example.dto;
 
+import com.example.exception.ErrorCode;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import org.springframework.http.HttpStatus;
 
+import java.time.Clock;
 import java.time.LocalDateTime;
 
 @Data
 @AllArgsConstructor
 public class ApiError {
+    // LocalDateTime.now() без аргументов на каждый вызов клонирует TimeZone по умолчанию
+    private static final Clock CLOCK = Clock.systemDefaultZone();
+
     private LocalDateTime timestamp;
     private int status;
     private String error;
+    private ErrorCode code;
     private String message;
     private String path;
 
-    public ApiError(HttpStatus status, String message, String path) {
-        this.timestamp = LocalDateTime.now();
+    public ApiError(HttpStatus status, ErrorCode code, String message, String path) {
+        this.timestamp = LocalDateTime.now(CLOCK);
         this.status = status.value();
         this.error = status.getReasonPhrase();
+        this.code = code;
         this.message = message;
         this.path = path;
     }
-}
\ No newline at end of file
+}
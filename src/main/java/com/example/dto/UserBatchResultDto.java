@@ -0,0 +1,29 @@
+package com.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBatchResultDto {
+    private int index;
+    private Status status;
+    private UserDto user;
+    private String error;
+
+    public enum Status {
+        CREATED,
+        CONFLICT,
+        INVALID
+    }
+
+    public static UserBatchResultDto created(int index, UserDto user) {
+        return new UserBatchResultDto(index, Status.CREATED, user, null);
+    }
+
+    public static UserBatchResultDto failed(int index, Status status, String error) {
+        return new UserBatchResultDto(index, status, null, error);
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.dto;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Задаётся ровно одно: список id или граница по дате создания
+@Data
+public class UserBulkDeleteDto {
+    private List<Integer> ids;
+
+    @JsonFormat(pattern = "yyyy-MM-dd HH:mm:ss")
+    private LocalDateTime createdBefore;
+}
@@ -0,0 +1,13 @@
+package com.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserBulkDeleteResultDto {
+    private long deleted;
+    private int statements;
+}
@@ -0,0 +1,24 @@
+package com.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Событие ленты изменений; offset — позиция сразу после события, с неё лента продолжается
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserChangeDto {
+    private String offset;
+    private Type type;
+    private UserDto user;
+    private LocalDateTime changedAt;
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+}
@@ -1,5 +1,6 @@
 package com.example.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -15,4 +16,8 @@ public class UserDto {
     private String email;
     private Integer age;
     private LocalDateTime createdAt;
+
+    // Отдаётся клиенту только через заголовок ETag
+    @JsonIgnore
+    private Integer version;
 }
\ No newline at end of file
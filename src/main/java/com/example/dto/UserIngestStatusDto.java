@@ -0,0 +1,27 @@
+package com.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserIngestStatusDto {
+    private String id;
+    private State state;
+    private UserDto user;
+    private String error;
+
+    public enum State {
+        QUEUED,
+        CREATED,
+        CONFLICT,
+        INVALID,
+        FAILED
+    }
+
+    public static UserIngestStatusDto queued(String id) {
+        return new UserIngestStatusDto(id, State.QUEUED, null, null);
+    }
+}
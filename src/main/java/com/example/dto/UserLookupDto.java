@@ -0,0 +1,10 @@
+package com.example.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class UserLookupDto {
+    private List<Integer> ids;
+}
@@ -0,0 +1,16 @@
+package com.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// items — в порядке запроса; missing — запрошенные id, которых нет
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserLookupResultDto {
+    private List<UserDto> items;
+    private List<Integer> missing;
+}
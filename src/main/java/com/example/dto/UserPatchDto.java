@@ -0,0 +1,22 @@
+package com.example.dto;
+
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.Pattern;
+import lombok.Data;
+
+// Частичное обновление: null означает «не менять поле»
+@Data
+public class UserPatchDto {
+    @Pattern(regexp = ".*\\S.*", message = "не должно быть пустым")
+    private String name;
+
+    @Email
+    @Pattern(regexp = ".*\\S.*", message = "не должно быть пустым")
+    private String email;
+
+    private Integer age;
+
+    public boolean isEmpty() {
+        return name == null && email == null && age == null;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.dto;
+
+import lombok.Data;
+import org.springframework.data.domain.Sort;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+// Параметры GET /api/users/search; все фильтры необязательны и объединяются через AND
+@Data
+public class UserSearchDto {
+    private String name;
+    private NameMatch nameMatch = NameMatch.CONTAINS;
+    private String email;
+    private Integer ageFrom;
+    private Integer ageTo;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdTo;
+
+    private SortField sort = SortField.CREATED_AT;
+    private Sort.Direction direction = Sort.Direction.ASC;
+    private String cursor;
+    private Integer limit;
+
+    public enum NameMatch {
+        PREFIX,
+        CONTAINS
+    }
+
+    public enum SortField {
+        ID,
+        NAME,
+        AGE,
+        CREATED_AT
+    }
+}
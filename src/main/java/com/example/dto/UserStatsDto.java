@@ -0,0 +1,20 @@
+package com.example.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Map;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class UserStatsDto {
+    private long total;
+    // Ключ — десятилетие возраста: "20-29"
+    private Map<String, Long> ageHistogram;
+    private Map<LocalDate, Long> signupsPerDay;
+    private LocalDateTime reconciledAt;
+}
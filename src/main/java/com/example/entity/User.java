@@ -2,15 +2,21 @@ package com.example.entity;
 
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.ColumnDefault;
 import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Data
 @Entity
-@Table(name = "users")
+@Table(name = "users", indexes = {
+        @Index(name = "idx_users_created_at_id", columnList = "created_at, id"),
+        @Index(name = "idx_users_age_id", columnList = "age, id"),
+        @Index(name = "idx_users_name_id", columnList = "name, id")
+})
 public class User {
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "users_seq")
+    @SequenceGenerator(name = "users_seq", sequenceName = "users_seq", allocationSize = 50)
     private Integer id;
 
     @Column(nullable = false)
@@ -25,4 +31,9 @@ public class User {
     @Column(nullable = false)
     @CreationTimestamp
     private LocalDateTime createdAt;
+
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Integer version;
 }
\ No newline at end of file
@@ -1,7 +1,11 @@
 package com.example.exception;
 
-public class ConflictException extends RuntimeException {
+public class ConflictException extends DomainException {
     public ConflictException(String message) {
-        super(message);
+        super(ErrorCode.CONFLICT, message);
+    }
+
+    public ConflictException(ErrorCode code, String message) {
+        super(code, message);
     }
 }
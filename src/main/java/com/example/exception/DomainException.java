@@ -0,0 +1,18 @@
+package com.example.exception;
+
+import lombok.Getter;
+
+/**
+ * Ожидаемая ошибка бизнес-логики. Такие исключения штатно превращаются в 4xx
+ * через обработчик ошибок, поэтому стек не собирается и suppressed не ведётся:
+ * заполнение трассы было самой дорогой частью ответа 404/409.
+ */
+@Getter
+public abstract class DomainException extends RuntimeException {
+    private final ErrorCode code;
+
+    protected DomainException(ErrorCode code, String message) {
+        super(message, null, false, false);
+        this.code = code;
+    }
+}
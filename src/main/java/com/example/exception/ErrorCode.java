@@ -0,0 +1,21 @@
+package com.example.exception;
+
+/**
+ * Машиночитаемый код ошибки в ответе API. Клиенты ветвятся по нему,
+ * а не по тексту сообщения.
+ */
+public enum ErrorCode {
+    USER_NOT_FOUND,
+    NOT_FOUND,
+    EMAIL_TAKEN,
+    CONFLICT,
+    VERSION_MISMATCH,
+    CHANGES_EXPIRED,
+    VALIDATION_FAILED,
+    TOO_MANY_REQUESTS,
+    DATA_INTEGRITY_VIOLATION,
+    DATABASE_UNAVAILABLE,
+    SERVICE_OVERLOADED,
+    SERVICE_STOPPING,
+    INTERNAL_ERROR
+}
@@ -1,54 +1,133 @@
 package com.example.exception;
 
 import com.example.dto.ApiError;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.transaction.CannotCreateTransactionException;
 import org.springframework.web.bind.MethodArgumentNotValidException;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
-import org.springframework.web.context.request.WebRequest;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.stream.Collectors;
 
 @RestControllerAdvice
 @Slf4j
+@RequiredArgsConstructor
+@Profile("!reactive")
 public class GlobalExceptionHandler {
+    static final String ERRORS_METRIC = "user.api.errors";
+
+    private final MeterRegistry meterRegistry;
+    // Теги счётчика зависят только от класса исключения и статуса: регистрируем один раз
+    private final Map<Class<?>, Map<HttpStatus, Counter>> errorCounters = new ConcurrentHashMap<>();
 
     @ExceptionHandler(NotFoundException.class)
-    public ResponseEntity<ApiError> handleNotFound(NotFoundException ex, WebRequest request) {
+    public ResponseEntity<ApiError> handleNotFound(NotFoundException ex, HttpServletRequest request) {
         return buildErrorResponse(ex, HttpStatus.NOT_FOUND, request);
     }
 
     @ExceptionHandler(ConflictException.class)
-    public ResponseEntity<ApiError> handleConflict(ConflictException ex, WebRequest request) {
+    public ResponseEntity<ApiError> handleConflict(ConflictException ex, HttpServletRequest request) {
         return buildErrorResponse(ex, HttpStatus.CONFLICT, request);
     }
 
+    @ExceptionHandler(PreconditionFailedException.class)
+    public ResponseEntity<ApiError> handlePreconditionFailed(
+            PreconditionFailedException ex, HttpServletRequest request) {
+        return buildErrorResponse(ex, HttpStatus.PRECONDITION_FAILED, request);
+    }
+
+    @ExceptionHandler(GoneException.class)
+    public ResponseEntity<ApiError> handleGone(GoneException ex, HttpServletRequest request) {
+        return buildErrorResponse(ex, HttpStatus.GONE, request);
+    }
+
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<ApiError> handleDataIntegrityViolation(
+            DataIntegrityViolationException ex, HttpServletRequest request) {
+        return buildErrorResponse(ex, ErrorCode.DATA_INTEGRITY_VIOLATION,
+                "Нарушено ограничение целостности данных", HttpStatus.CONFLICT, request);
+    }
+
+    // Соединение не получено: при открытии транзакции либо прямо в JdbcTemplate вне её
+    // (CannotGetJdbcConnectionException — наследник DataAccessResourceFailureException)
+    @ExceptionHandler({CannotCreateTransactionException.class, DataAccessResourceFailureException.class})
+    public ResponseEntity<ApiError> handleConnectionUnavailable(Exception ex, HttpServletRequest request) {
+        log.warn("Нет свободного соединения с БД: {}", ex.getMessage());
+        return buildErrorResponse(ex, ErrorCode.DATABASE_UNAVAILABLE,
+                "База данных перегружена, повторите запрос позже", HttpStatus.SERVICE_UNAVAILABLE, request);
+    }
+
+    @ExceptionHandler(TooManyRequestsException.class)
+    public ResponseEntity<ApiError> handleTooManyRequests(TooManyRequestsException ex, HttpServletRequest request) {
+        ResponseEntity<ApiError> response = buildErrorResponse(ex, HttpStatus.TOO_MANY_REQUESTS, request);
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response.getBody());
+    }
+
+    @ExceptionHandler(ServiceUnavailableException.class)
+    public ResponseEntity<ApiError> handleServiceUnavailable(
+            ServiceUnavailableException ex, HttpServletRequest request) {
+        ResponseEntity<ApiError> response = buildErrorResponse(ex, HttpStatus.SERVICE_UNAVAILABLE, request);
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(response.getBody());
+    }
+
     @ExceptionHandler(ValidationException.class)
-    public ResponseEntity<ApiError> handleValidation(ValidationException ex, WebRequest request) {
+    public ResponseEntity<ApiError> handleValidation(ValidationException ex, HttpServletRequest request) {
         return buildErrorResponse(ex, HttpStatus.BAD_REQUEST, request);
     }
 
     @ExceptionHandler(MethodArgumentNotValidException.class)
     public ResponseEntity<ApiError> handleMethodArgumentNotValid(
-            MethodArgumentNotValidException ex, WebRequest request) {
+            MethodArgumentNotValidException ex, HttpServletRequest request) {
         String errorMessage = ex.getBindingResult().getFieldErrors().stream()
                 .map(fieldError -> fieldError.getField() + ": " + fieldError.getDefaultMessage())
                 .collect(Collectors.joining("; "));
-        return buildErrorResponse(new Exception(errorMessage), HttpStatus.BAD_REQUEST, request);
+        return buildErrorResponse(ex, ErrorCode.VALIDATION_FAILED, errorMessage, HttpStatus.BAD_REQUEST, request);
     }
 
     @ExceptionHandler(Exception.class)
-    public ResponseEntity<ApiError> handleAllExceptions(Exception ex, WebRequest request) {
+    public ResponseEntity<ApiError> handleAllExceptions(Exception ex, HttpServletRequest request) {
         log.error("Internal server error", ex);
-        return buildErrorResponse(ex, HttpStatus.INTERNAL_SERVER_ERROR, request);
+        return buildErrorResponse(ex, ErrorCode.INTERNAL_ERROR, ex.getMessage(),
+                HttpStatus.INTERNAL_SERVER_ERROR, request);
     }
 
     private ResponseEntity<ApiError> buildErrorResponse(
-            Exception ex, HttpStatus status, WebRequest request) {
-        ApiError error = new ApiError(status, ex.getMessage(),
-                request.getDescription(false).replace("uri=", ""));
+            DomainException ex, HttpStatus status, HttpServletRequest request) {
+        return buildErrorResponse(ex, ex.getCode(), ex.getMessage(), status, request);
+    }
+
+    private ResponseEntity<ApiError> buildErrorResponse(
+            Exception ex, ErrorCode code, String message, HttpStatus status, HttpServletRequest request) {
+        errorCounter(ex.getClass(), status).increment();
+        ApiError error = new ApiError(status, code, message, request.getRequestURI());
         return new ResponseEntity<>(error, status);
     }
-}
\ No newline at end of file
+
+    private Counter errorCounter(Class<?> exceptionType, HttpStatus status) {
+        Map<HttpStatus, Counter> byStatus =
+                errorCounters.computeIfAbsent(exceptionType, type -> new ConcurrentHashMap<>());
+        Counter counter = byStatus.get(status);
+        if (counter == null) {
+            counter = byStatus.computeIfAbsent(status, s -> meterRegistry.counter(ERRORS_METRIC,
+                    "exception", exceptionType.getSimpleName(),
+                    "status", String.valueOf(s.value())));
+        }
+        return counter;
+    }
+}
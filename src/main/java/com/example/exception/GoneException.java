@@ -0,0 +1,7 @@
+package com.example.exception;
+
+public class GoneException extends DomainException {
+    public GoneException(ErrorCode code, String message) {
+        super(code, message);
+    }
+}
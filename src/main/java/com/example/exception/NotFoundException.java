@@ -1,7 +1,11 @@
 package com.example.exception;
 
-public class NotFoundException extends RuntimeException {
+public class NotFoundException extends DomainException {
     public NotFoundException(String message) {
-        super(message);
+        super(ErrorCode.NOT_FOUND, message);
+    }
+
+    public NotFoundException(ErrorCode code, String message) {
+        super(code, message);
     }
 }
@@ -0,0 +1,7 @@
+package com.example.exception;
+
+public class PreconditionFailedException extends DomainException {
+    public PreconditionFailedException(String message) {
+        super(ErrorCode.VERSION_MISMATCH, message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.exception;
+
+public class ServiceUnavailableException extends DomainException {
+    public ServiceUnavailableException(String message) {
+        super(ErrorCode.SERVICE_OVERLOADED, message);
+    }
+
+    public ServiceUnavailableException(ErrorCode code, String message) {
+        super(code, message);
+    }
+}
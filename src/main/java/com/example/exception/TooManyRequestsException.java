@@ -0,0 +1,7 @@
+package com.example.exception;
+
+public class TooManyRequestsException extends DomainException {
+    public TooManyRequestsException(String message) {
+        super(ErrorCode.TOO_MANY_REQUESTS, message);
+    }
+}
@@ -1,7 +1,11 @@
 package com.example.exception;
 
-public class ValidationException extends RuntimeException {
+public class ValidationException extends DomainException {
     public ValidationException(String message) {
-        super(message);
+        super(ErrorCode.VALIDATION_FAILED, message);
     }
-}
\ No newline at end of file
+
+    public ValidationException(ErrorCode code, String message) {
+        super(code, message);
+    }
+}
@@ -0,0 +1,76 @@
+package com.example.reactive;
+
+import com.example.dto.ApiError;
+import com.example.exception.ConflictException;
+import com.example.exception.ErrorCode;
+import com.example.exception.NotFoundException;
+import com.example.exception.ValidationException;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+import org.springframework.web.bind.support.WebExchangeBindException;
+import org.springframework.web.server.ServerWebExchange;
+
+import java.util.stream.Collectors;
+
+@RestControllerAdvice
+@Slf4j
+@RequiredArgsConstructor
+@Profile("reactive")
+public class ReactiveExceptionHandler {
+    static final String ERRORS_METRIC = "user.api.errors";
+
+    private final MeterRegistry meterRegistry;
+
+    @ExceptionHandler(NotFoundException.class)
+    public ResponseEntity<ApiError> handleNotFound(NotFoundException ex, ServerWebExchange exchange) {
+        return buildErrorResponse(ex, ex.getCode(), ex.getMessage(), HttpStatus.NOT_FOUND, exchange);
+    }
+
+    @ExceptionHandler(ConflictException.class)
+    public ResponseEntity<ApiError> handleConflict(ConflictException ex, ServerWebExchange exchange) {
+        return buildErrorResponse(ex, ex.getCode(), ex.getMessage(), HttpStatus.CONFLICT, exchange);
+    }
+
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    public ResponseEntity<ApiError> handleDataIntegrityViolation(
+            DataIntegrityViolationException ex, ServerWebExchange exchange) {
+        return buildErrorResponse(ex, ErrorCode.DATA_INTEGRITY_VIOLATION,
+                "Нарушено ограничение целостности данных", HttpStatus.CONFLICT, exchange);
+    }
+
+    @ExceptionHandler(ValidationException.class)
+    public ResponseEntity<ApiError> handleValidation(ValidationException ex, ServerWebExchange exchange) {
+        return buildErrorResponse(ex, ex.getCode(), ex.getMessage(), HttpStatus.BAD_REQUEST, exchange);
+    }
+
+    @ExceptionHandler(WebExchangeBindException.class)
+    public ResponseEntity<ApiError> handleBind(WebExchangeBindException ex, ServerWebExchange exchange) {
+        String errorMessage = ex.getBindingResult().getFieldErrors().stream()
+                .map(fieldError -> fieldError.getField() + ": " + fieldError.getDefaultMessage())
+                .collect(Collectors.joining("; "));
+        return buildErrorResponse(ex, ErrorCode.VALIDATION_FAILED, errorMessage, HttpStatus.BAD_REQUEST, exchange);
+    }
+
+    @ExceptionHandler(Exception.class)
+    public ResponseEntity<ApiError> handleAllExceptions(Exception ex, ServerWebExchange exchange) {
+        log.error("Internal server error", ex);
+        return buildErrorResponse(ex, ErrorCode.INTERNAL_ERROR, ex.getMessage(),
+                HttpStatus.INTERNAL_SERVER_ERROR, exchange);
+    }
+
+    private ResponseEntity<ApiError> buildErrorResponse(
+            Exception ex, ErrorCode code, String message, HttpStatus status, ServerWebExchange exchange) {
+        meterRegistry.counter(ERRORS_METRIC,
+                "exception", ex.getClass().getSimpleName(),
+                "status", String.valueOf(status.value())).increment();
+        ApiError error = new ApiError(status, code, message, exchange.getRequest().getPath().value());
+        return new ResponseEntity<>(error, status);
+    }
+}
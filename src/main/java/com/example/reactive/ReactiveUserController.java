@@ -0,0 +1,56 @@
+package com.example.reactive;
+
+import com.example.dto.UserCreateDto;
+import com.example.dto.UserDto;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.validation.annotation.Validated;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+@Validated
+@RestController
+@Profile("reactive")
+@RequestMapping("/api/users")
+@RequiredArgsConstructor
+public class ReactiveUserController {
+
+    private final ReactiveUserService userService;
+
+    @PostMapping
+    @ResponseStatus(HttpStatus.CREATED)
+    public Mono<UserDto> createUser(@Valid @RequestBody UserCreateDto userCreateDTO) {
+        return userService.createUser(userCreateDTO);
+    }
+
+    @GetMapping("/{id}")
+    public Mono<UserDto> getUser(@PathVariable Integer id) {
+        return userService.getUserById(id);
+    }
+
+    @GetMapping
+    public Flux<UserDto> getAllUsers() {
+        return userService.getAllUsers();
+    }
+
+    @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<UserDto> exportUsers() {
+        return userService.exportUsers();
+    }
+
+    @PutMapping("/{id}")
+    public Mono<UserDto> updateUser(@PathVariable("id") Integer id,
+                                  @Valid @RequestBody UserCreateDto userCreateDTO) {
+        return userService.updateUser(id, userCreateDTO);
+    }
+
+    @DeleteMapping("/{id}")
+    @ResponseStatus(HttpStatus.NO_CONTENT)
+    public Mono<Void> deleteUser(@PathVariable("id") Integer id) {
+        return userService.deleteUser(id);
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.reactive;
+
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+public interface ReactiveUserRepository extends ReactiveCrudRepository<UserRow, Integer> {
+    Mono<Boolean> existsByEmail(String email);
+
+    Flux<UserRow> findAllByOrderByCreatedAtAscIdAsc();
+
+    Flux<UserRow> findAllByOrderByIdAsc();
+
+    @Query("select * from users where id = :id for update")
+    Mono<UserRow> findByIdForUpdate(Integer id);
+
+    @Query("select nextval('users_seq')")
+    Mono<Long> nextSequenceValue();
+}
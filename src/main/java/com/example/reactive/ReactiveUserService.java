@@ -0,0 +1,163 @@
+package com.example.reactive;
+
+import com.example.dto.UserChangeDto;
+import com.example.dto.UserCreateDto;
+import com.example.dto.UserDto;
+import com.example.exception.ConflictException;
+import com.example.exception.ErrorCode;
+import com.example.exception.NotFoundException;
+import com.example.repository.UserChangeRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.r2dbc.core.R2dbcEntityTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDateTime;
+import java.util.Locale;
+
+/**
+ * Реактивный CRUD пользователей. Каждая запись в users пишет событие в outbox
+ * user_changes в той же транзакции, как и сервлетный профиль: лента изменений
+ * видит записи обоих профилей.
+ */
+@Service
+@RequiredArgsConstructor
+@Profile("reactive")
+public class ReactiveUserService {
+    // Совпадает с allocationSize генератора users_seq в JPA-сущности User
+    static final int ID_BLOCK_SIZE = 50;
+    // Ограничение UNIQUE на users.email из V1: имя по умолчанию в PostgreSQL
+    static final String EMAIL_CONSTRAINT = "users_email_key";
+
+    private final ReactiveUserRepository userRepository;
+    private final R2dbcEntityTemplate entityTemplate;
+    private final TransactionalOperator transactions;
+
+    private long nextId;
+    private long lastId = -1;
+
+    public Mono<UserDto> createUser(UserCreateDto userCreateDTO) {
+        String email = userCreateDTO.getEmail();
+        return userRepository.existsByEmail(email)
+                .flatMap(exists -> exists
+                        ? Mono.<Integer>error(new ConflictException(ErrorCode.EMAIL_TAKEN, "Email уже существует: " + email))
+                        : allocateId())
+                .flatMap(id -> entityTemplate.insert(toRow(id, userCreateDTO))
+                        .flatMap(row -> logChange(UserChangeDto.Type.CREATED, row))
+                        .as(transactions::transactional))
+                .onErrorMap(DataIntegrityViolationException.class, e -> emailTakenOr(e, email))
+                .map(this::convertToDTO);
+    }
+
+    public Mono<UserDto> getUserById(Integer id) {
+        return userRepository.findById(id)
+                .switchIfEmpty(Mono.error(() -> new NotFoundException(ErrorCode.USER_NOT_FOUND, "Пользователь не найден: " + id)))
+                .map(this::convertToDTO);
+    }
+
+    public Flux<UserDto> getAllUsers() {
+        return userRepository.findAllByOrderByCreatedAtAscIdAsc().map(this::convertToDTO);
+    }
+
+    public Flux<UserDto> exportUsers() {
+        return userRepository.findAllByOrderByIdAsc().map(this::convertToDTO);
+    }
+
+    public Mono<UserDto> updateUser(Integer id, UserCreateDto userCreateDTO) {
+        return userRepository.findByIdForUpdate(id)
+                .switchIfEmpty(Mono.error(() -> new NotFoundException(ErrorCode.USER_NOT_FOUND, "Пользователь не найден: " + id)))
+                .flatMap(row -> {
+                    row.setName(userCreateDTO.getName());
+                    row.setEmail(userCreateDTO.getEmail());
+                    row.setAge(userCreateDTO.getAge());
+                    return entityTemplate.update(row);
+                })
+                .flatMap(row -> logChange(UserChangeDto.Type.UPDATED, row))
+                .as(transactions::transactional)
+                .onErrorMap(DataIntegrityViolationException.class, e -> emailTakenOr(e, userCreateDTO.getEmail()))
+                .map(this::convertToDTO);
+    }
+
+    public Mono<Void> deleteUser(Integer id) {
+        return userRepository.findByIdForUpdate(id)
+                .flatMap(row -> userRepository.delete(row).then(logChange(UserChangeDto.Type.DELETED, row)))
+                .as(transactions::transactional)
+                .then();
+    }
+
+    /**
+     * Конфликт email — только нарушение его уникального ограничения; остальные нарушения
+     * целостности уходят в обработчик как DATA_INTEGRITY_VIOLATION.
+     */
+    private static Throwable emailTakenOr(DataIntegrityViolationException e, String email) {
+        return violatesConstraint(e, EMAIL_CONSTRAINT)
+                ? new ConflictException(ErrorCode.EMAIL_TAKEN, "Email уже существует: " + email)
+                : e;
+    }
+
+    // R2DBC не отдаёт имя ограничения отдельным полем: оно есть в тексте ошибки драйвера
+    static boolean violatesConstraint(Throwable e, String constraint) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            String message = cause.getMessage();
+            if (message != null && message.toLowerCase(Locale.ROOT).contains(constraint)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** Пишет событие в outbox; строка users к этому моменту заблокирована текущей транзакцией. */
+    private Mono<UserRow> logChange(UserChangeDto.Type type, UserRow row) {
+        return entityTemplate.getDatabaseClient().sql(UserChangeRepository.INSERT)
+                .bind("type", type.name())
+                .bind("userId", row.getId())
+                .bind("name", row.getName())
+                .bind("email", row.getEmail())
+                .bind("age", row.getAge())
+                .bind("createdAt", row.getCreatedAt())
+                .bind("version", row.getVersion())
+                .bind("changedAt", LocalDateTime.now())
+                .then()
+                .thenReturn(row);
+    }
+
+    /**
+     * Выдаёт id блоками из users_seq по той же схеме, что и pooled-оптимизатор
+     * Hibernate: значение последовательности — верхняя граница блока.
+     */
+    private Mono<Integer> allocateId() {
+        synchronized (this) {
+            if (nextId <= lastId) {
+                return Mono.just((int) nextId++);
+            }
+        }
+        return userRepository.nextSequenceValue().map(hi -> {
+            synchronized (this) {
+                lastId = hi;
+                nextId = hi - ID_BLOCK_SIZE + 1;
+                return (int) nextId++;
+            }
+        });
+    }
+
+    private UserRow toRow(Integer id, UserCreateDto userCreateDTO) {
+        UserRow row = new UserRow();
+        row.setId(id);
+        row.setName(userCreateDTO.getName());
+        row.setEmail(userCreateDTO.getEmail());
+        row.setAge(userCreateDTO.getAge());
+        row.setCreatedAt(userCreateDTO.getCreatedAt() != null
+                ? userCreateDTO.getCreatedAt()
+                : LocalDateTime.now());
+        return row;
+    }
+
+    UserDto convertToDTO(UserRow row) {
+        return new UserDto(row.getId(), row.getName(), row.getEmail(), row.getAge(), row.getCreatedAt(),
+                row.getVersion());
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.reactive;
+
+import lombok.Data;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.LocalDateTime;
+
+@Data
+@Table("users")
+public class UserRow {
+    @Id
+    private Integer id;
+    private String name;
+    private String email;
+    private Integer age;
+    private LocalDateTime createdAt;
+    @Version
+    private Integer version;
+}
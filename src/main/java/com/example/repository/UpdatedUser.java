@@ -0,0 +1,11 @@
+package com.example.repository;
+
+import com.example.dto.UserDto;
+import lombok.Value;
+
+// Строка после UPDATE ... RETURNING и возраст до изменения (для статистики)
+@Value
+public class UpdatedUser {
+    UserDto user;
+    int previousAge;
+}
@@ -0,0 +1,17 @@
+package com.example.repository;
+
+import com.example.dto.UserChangeDto;
+import com.example.dto.UserDto;
+import lombok.Value;
+
+import java.time.LocalDateTime;
+
+// Строка outbox user_changes; (txid, id) — смещение в пределах одной базы
+@Value
+public class UserChange {
+    long txid;
+    long id;
+    UserChangeDto.Type type;
+    UserDto user;
+    LocalDateTime changedAt;
+}
@@ -0,0 +1,112 @@
+package com.example.repository;
+
+import com.example.dto.UserChangeDto;
+import com.example.dto.UserDto;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Outbox изменений пользователей (таблица user_changes). Создание пишется отсюда
+ * в транзакции сервиса; изменения и удаления — тем же оператором, что меняет users
+ * (см. {@link #logged}).
+ */
+@Repository
+@Profile("!reactive")
+@RequiredArgsConstructor
+public class UserChangeRepository {
+    private static final String COLUMNS = "type, user_id, name, email, age, created_at, version, changed_at";
+
+    /** Вставка одного события; тем же оператором пишет outbox реактивный профиль. */
+    public static final String INSERT = "INSERT INTO user_changes (" + COLUMNS + ")"
+            + " VALUES (:type, :userId, :name, :email, :age, :createdAt, :version, :changedAt)";
+
+    private static final RowMapper<UserChange> CHANGE_MAPPER = (rs, rowNum) -> new UserChange(
+            rs.getLong("txid"),
+            rs.getLong("id"),
+            UserChangeDto.Type.valueOf(rs.getString("type")),
+            new UserDto(
+                    rs.getInt("user_id"),
+                    rs.getString("name"),
+                    rs.getString("email"),
+                    rs.getInt("age"),
+                    rs.getObject("created_at", LocalDateTime.class),
+                    rs.getInt("version")),
+            rs.getObject("changed_at", LocalDateTime.class));
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    /**
+     * Оборачивает изменяющий оператор с RETURNING в CTE, который пишет
+     * возвращённые строки в outbox; параметр :changedAt задаёт вызывающий код.
+     */
+    static String logged(UserChangeDto.Type type, String statement) {
+        return "WITH changed AS (" + statement + "), logged AS (INSERT INTO user_changes (" + COLUMNS + ")"
+                + " SELECT '" + type + "', id, name, email, age, created_at, version, :changedAt FROM changed)"
+                + " SELECT * FROM changed";
+    }
+
+    public void insertAll(UserChangeDto.Type type, Collection<UserDto> users, LocalDateTime changedAt) {
+        MapSqlParameterSource[] batch = users.stream()
+                .map(user -> new MapSqlParameterSource("type", type.name())
+                        .addValue("userId", user.getId())
+                        .addValue("name", user.getName())
+                        .addValue("email", user.getEmail())
+                        .addValue("age", user.getAge())
+                        .addValue("createdAt", user.getCreatedAt())
+                        .addValue("version", user.getVersion())
+                        .addValue("changedAt", changedAt))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate(INSERT, batch);
+    }
+
+    /**
+     * События после позиции (afterTxid, afterId) в порядке (txid, id). Отдаются только
+     * строки транзакций ниже xmin текущего снимка: все они уже завершены, поэтому
+     * строка, закоммиченная позже, никогда не окажется позади выданной позиции.
+     * Долгая пишущая транзакция задерживает ленту, но не теряет события.
+     */
+    public List<UserChange> findAfter(long afterTxid, long afterId, int limit) {
+        return jdbcTemplate.query("SELECT CAST(CAST(txid AS text) AS bigint) AS txid, id, " + COLUMNS
+                        + " FROM user_changes"
+                        + " WHERE (txid, id) > (CAST(CAST(:afterTxid AS text) AS xid8), :afterId)"
+                        + " AND txid < pg_snapshot_xmin(pg_current_snapshot())"
+                        + " ORDER BY txid, id LIMIT :limit",
+                new MapSqlParameterSource("afterTxid", afterTxid)
+                        .addValue("afterId", afterId)
+                        .addValue("limit", limit),
+                CHANGE_MAPPER);
+    }
+
+    /**
+     * Позиция (txid, id) последнего удалённого события; {0, 0}, если ничего не удалялось.
+     */
+    public long[] findPrunedPosition() {
+        return jdbcTemplate.queryForObject("SELECT CAST(CAST(txid AS text) AS bigint) AS txid, change_id"
+                        + " FROM user_changes_pruned WHERE id = 1", new MapSqlParameterSource(),
+                (rs, rowNum) -> new long[]{rs.getLong("txid"), rs.getLong("change_id")});
+    }
+
+    /**
+     * Удаляет не больше limit самых старых событий, записанных раньше changedBefore,
+     * и тем же оператором сдвигает позицию удалённых (см. {@link #findPrunedPosition}).
+     */
+    public int deleteChangedBefore(LocalDateTime changedBefore, int limit) {
+        return jdbcTemplate.queryForObject("WITH deleted AS (DELETE FROM user_changes WHERE id IN"
+                        + " (SELECT id FROM user_changes WHERE changed_at < :changedBefore ORDER BY id LIMIT :limit)"
+                        + " RETURNING txid, id),"
+                        + " last AS (SELECT txid, id FROM deleted ORDER BY txid DESC, id DESC LIMIT 1),"
+                        + " marked AS (UPDATE user_changes_pruned p SET txid = last.txid, change_id = last.id"
+                        + " FROM last WHERE p.id = 1 AND (last.txid, last.id) > (p.txid, p.change_id) RETURNING 1)"
+                        + " SELECT count(*) FROM deleted",
+                new MapSqlParameterSource("changedBefore", changedBefore).addValue("limit", limit),
+                Integer.class);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Profile;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Справочник email → id пользователя (таблица user_emails) для шардирования:
+ * первичный ключ по email держит уникальность между шардами. Методы работают
+ * с текущим шардом; выбор шарда по email — на вызывающем коде.
+ */
+@Repository
+@Profile("!reactive")
+@RequiredArgsConstructor
+public class UserEmailRepository {
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    public Set<String> findExisting(Collection<String> emails) {
+        return new HashSet<>(jdbcTemplate.queryForList("SELECT email FROM user_emails WHERE email IN (:emails)",
+                new MapSqlParameterSource("emails", emails), String.class));
+    }
+
+    public Optional<Integer> findUserId(String email) {
+        List<Integer> rows = jdbcTemplate.queryForList("SELECT user_id FROM user_emails WHERE email = :email",
+                new MapSqlParameterSource("email", email), Integer.class);
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+
+    /**
+     * Занятый email — DuplicateKeyException, для пакета — на весь пакет.
+     */
+    public void insertAll(Map<String, Integer> userIdsByEmail) {
+        jdbcTemplate.batchUpdate("INSERT INTO user_emails (email, user_id) VALUES (:email, :userId)",
+                batch(userIdsByEmail));
+    }
+
+    /**
+     * Удаляет только записи, принадлежащие указанным пользователям: email мог уже перейти к другому.
+     */
+    public void deleteAll(Map<String, Integer> userIdsByEmail) {
+        jdbcTemplate.batchUpdate("DELETE FROM user_emails WHERE email = :email AND user_id = :userId",
+                batch(userIdsByEmail));
+    }
+
+    private static MapSqlParameterSource[] batch(Map<String, Integer> userIdsByEmail) {
+        return userIdsByEmail.entrySet().stream()
+                .map(entry -> new MapSqlParameterSource("email", entry.getKey())
+                        .addValue("userId", entry.getValue()))
+                .toArray(MapSqlParameterSource[]::new);
+    }
+}
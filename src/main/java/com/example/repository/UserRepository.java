@@ -1,10 +1,71 @@
 package com.example.repository;
 
+import com.example.dto.UserDto;
 import com.example.entity.User;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Stream;
+
+public interface UserRepository extends JpaRepository<User, Integer>, UserRepositoryCustom {
+    String DTO_PROJECTION = "select new com.example.dto.UserDto(u.id, u.name, u.email, u.age, u.createdAt, u.version) from User u";
 
-public interface UserRepository extends JpaRepository<User, Integer> {
     Optional<User> findByEmail(String email);
+    // Вызываются и вне транзакции сервиса: собственная короткая транзакция на один SELECT
+    @Transactional(readOnly = true)
     boolean existsByEmail(String email);
-}
\ No newline at end of file
+
+    @Query("select u.email from User u where u.email in :emails")
+    Set<String> findExistingEmails(Collection<String> emails);
+
+    @Transactional(readOnly = true)
+    @Query(DTO_PROJECTION + " where u.id = :id")
+    Optional<UserDto> findDtoById(Integer id);
+
+    @Query(DTO_PROJECTION + " where u.id in :ids")
+    List<UserDto> findDtosByIds(Collection<Integer> ids);
+
+    @Query("select u.version from User u where u.id = :id")
+    Optional<Integer> findVersionById(Integer id);
+
+    @Query(DTO_PROJECTION + " order by u.createdAt, u.id")
+    List<UserDto> findFirstPage(Limit limit);
+
+    @Query(DTO_PROJECTION + " where (u.createdAt, u.id) > (:createdAt, :id) order by u.createdAt, u.id")
+    List<UserDto> findPageAfter(LocalDateTime createdAt, Integer id, Limit limit);
+
+    // Первый запрос транзакции REPEATABLE READ фиксирует её снимок
+    @Query(value = "SELECT 1", nativeQuery = true)
+    int openSnapshot();
+
+    @Query("select u.age, count(u) from User u group by u.age")
+    List<Object[]> countByAge();
+
+    @Query("select cast(u.createdAt as LocalDate), count(u) from User u group by cast(u.createdAt as LocalDate)")
+    List<Object[]> countByCreatedDate();
+
+    @Query(DTO_PROJECTION + " order by u.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"),
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "false")
+    })
+    Stream<UserDto> streamAllOrderById();
+
+    // Блок id по схеме pooled-оптимизатора: значение — верхняя граница блока из allocationSize id
+    @Query(value = "select nextval('users_seq')", nativeQuery = true)
+    long nextSequenceValue();
+
+    @Query("select u.email from User u")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    Stream<String> streamAllEmails();
+}
@@ -0,0 +1,43 @@
+package com.example.repository;
+
+import com.example.dto.UserDto;
+import com.example.dto.UserSearchDto;
+import com.example.entity.User;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface UserRepositoryCustom {
+    /**
+     * Обновляет только переданные (не null) колонки одним UPDATE ... RETURNING
+     * и увеличивает version. Пустой результат — строки с таким id
+     * (и версией, если expectedVersion задан) нет.
+     */
+    Optional<UpdatedUser> updateColumns(Integer id, String name, String email, Integer age, Integer expectedVersion);
+
+    /**
+     * Вставляет пользователей с уже назначенными id одним пакетом, минуя генератор
+     * сущности; version у новых строк — 0.
+     */
+    void insertAll(Collection<User> users);
+
+    /**
+     * Удаляет пользователя одним DELETE ... RETURNING и возвращает удалённую строку.
+     */
+    Optional<UserDto> deleteUserById(Integer id);
+
+    List<UserDto> deleteUsersByIds(Collection<Integer> ids);
+
+    /**
+     * Удаляет не больше limit самых старых пользователей, созданных раньше createdBefore.
+     */
+    List<UserDto> deleteUsersCreatedBefore(LocalDateTime createdBefore, int limit);
+
+    /**
+     * Поиск по фильтрам с keyset-пагинацией по (поле сортировки, id).
+     * afterValue/afterId — позиция последней выданной записи или null для первой страницы.
+     */
+    List<UserDto> search(UserSearchDto criteria, Comparable<?> afterValue, Integer afterId, int limit);
+}
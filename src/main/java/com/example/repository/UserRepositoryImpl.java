@@ -0,0 +1,212 @@
+package com.example.repository;
+
+import com.example.dto.UserChangeDto;
+import com.example.dto.UserDto;
+import com.example.dto.UserSearchDto;
+import com.example.entity.User;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+import lombok.RequiredArgsConstructor;
+import org.hibernate.dialect.PostgreSQLDialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+
+@RequiredArgsConstructor
+public class UserRepositoryImpl implements UserRepositoryCustom {
+    private static final String RETURNING = " RETURNING id, name, email, age, created_at, version";
+    private static final String UPDATE_RETURNING =
+            " RETURNING u.id, u.name, u.email, u.age, u.created_at, u.version, ";
+
+    private static final RowMapper<UserDto> USER_DTO_MAPPER = (rs, rowNum) -> new UserDto(
+            rs.getInt("id"),
+            rs.getString("name"),
+            rs.getString("email"),
+            rs.getInt("age"),
+            rs.getObject("created_at", LocalDateTime.class),
+            rs.getInt("version"));
+
+    private static final char LIKE_ESCAPE = '\\';
+
+    // Имена сравниваются по кодовым точкам, как String в Java: слияние страниц шардов
+    // и курсор видят тот же порядок, что и ORDER BY каждого шарда (см. V7)
+    private static final String NAME_COLLATION = "C";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public Optional<UpdatedUser> updateColumns(Integer id, String name, String email, Integer age,
+                                               Integer expectedVersion) {
+        MapSqlParameterSource params = new MapSqlParameterSource("id", id);
+        StringBuilder sql = new StringBuilder("UPDATE users u SET ");
+        if (name != null) {
+            sql.append("name = :name, ");
+            params.addValue("name", name);
+        }
+        if (email != null) {
+            sql.append("email = :email, ");
+            params.addValue("email", email);
+        }
+        if (age != null) {
+            sql.append("age = :age, ");
+            params.addValue("age", age);
+        }
+        sql.append("version = u.version + 1");
+        if (age != null) {
+            // Прежний возраст нужен статистике; строка блокируется до UPDATE в том же операторе
+            sql.append(" FROM (SELECT id, age FROM users WHERE id = :id FOR UPDATE) previous"
+                    + " WHERE u.id = previous.id");
+        } else {
+            sql.append(" WHERE u.id = :id");
+        }
+        if (expectedVersion != null) {
+            sql.append(" AND u.version = :version");
+            params.addValue("version", expectedVersion);
+        }
+        sql.append(UPDATE_RETURNING).append(age != null ? "previous.age" : "u.age").append(" AS previous_age");
+        params.addValue("changedAt", LocalDateTime.now());
+
+        List<UpdatedUser> rows = jdbcTemplate.query(
+                UserChangeRepository.logged(UserChangeDto.Type.UPDATED, sql.toString()), params, (rs, rowNum) ->
+                new UpdatedUser(USER_DTO_MAPPER.mapRow(rs, rowNum), rs.getInt("previous_age")));
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+
+    @Override
+    public void insertAll(Collection<User> users) {
+        MapSqlParameterSource[] batch = users.stream()
+                .map(user -> new MapSqlParameterSource("id", user.getId())
+                        .addValue("name", user.getName())
+                        .addValue("email", user.getEmail())
+                        .addValue("age", user.getAge())
+                        .addValue("createdAt", user.getCreatedAt()))
+                .toArray(MapSqlParameterSource[]::new);
+        jdbcTemplate.batchUpdate("INSERT INTO users (id, name, email, age, created_at, version)"
+                + " VALUES (:id, :name, :email, :age, :createdAt, 0)", batch);
+    }
+
+    @Override
+    public Optional<UserDto> deleteUserById(Integer id) {
+        List<UserDto> rows = jdbcTemplate.query(
+                UserChangeRepository.logged(UserChangeDto.Type.DELETED, "DELETE FROM users WHERE id = :id" + RETURNING),
+                new MapSqlParameterSource("id", id).addValue("changedAt", LocalDateTime.now()), USER_DTO_MAPPER);
+        return rows.isEmpty() ? Optional.empty() : Optional.of(rows.get(0));
+    }
+
+    @Override
+    public List<UserDto> deleteUsersByIds(Collection<Integer> ids) {
+        return jdbcTemplate.query(
+                UserChangeRepository.logged(UserChangeDto.Type.DELETED, "DELETE FROM users WHERE id IN (:ids)" + RETURNING),
+                new MapSqlParameterSource("ids", ids).addValue("changedAt", LocalDateTime.now()), USER_DTO_MAPPER);
+    }
+
+    @Override
+    public List<UserDto> deleteUsersCreatedBefore(LocalDateTime createdBefore, int limit) {
+        MapSqlParameterSource params = new MapSqlParameterSource("createdBefore", createdBefore)
+                .addValue("limit", limit)
+                .addValue("changedAt", LocalDateTime.now());
+        return jdbcTemplate.query(UserChangeRepository.logged(UserChangeDto.Type.DELETED,
+                "DELETE FROM users WHERE id IN (SELECT id FROM users"
+                        + " WHERE created_at < :createdBefore ORDER BY created_at, id LIMIT :limit)" + RETURNING),
+                params, USER_DTO_MAPPER);
+    }
+
+    @Override
+    public List<UserDto> search(UserSearchDto criteria, Comparable<?> afterValue, Integer afterId, int limit) {
+        List<String> conditions = new ArrayList<>();
+        Map<String, Object> params = new HashMap<>();
+        if (criteria.getName() != null && !criteria.getName().isBlank()) {
+            // lower(name) like ... обслуживается триграммным индексом idx_users_name_trgm
+            String escaped = escapeLike(criteria.getName().trim().toLowerCase(Locale.ROOT));
+            conditions.add("lower(u.name) like :name escape :escape");
+            params.put("name", criteria.getNameMatch() == UserSearchDto.NameMatch.PREFIX
+                    ? escaped + "%"
+                    : "%" + escaped + "%");
+            params.put("escape", LIKE_ESCAPE);
+        }
+        if (criteria.getEmail() != null) {
+            conditions.add("u.email = :email");
+            params.put("email", criteria.getEmail());
+        }
+        if (criteria.getAgeFrom() != null) {
+            conditions.add("u.age >= :ageFrom");
+            params.put("ageFrom", criteria.getAgeFrom());
+        }
+        if (criteria.getAgeTo() != null) {
+            conditions.add("u.age <= :ageTo");
+            params.put("ageTo", criteria.getAgeTo());
+        }
+        if (criteria.getCreatedFrom() != null) {
+            conditions.add("u.createdAt >= :createdFrom");
+            params.put("createdFrom", criteria.getCreatedFrom());
+        }
+        if (criteria.getCreatedTo() != null) {
+            conditions.add("u.createdAt < :createdTo");
+            params.put("createdTo", criteria.getCreatedTo());
+        }
+
+        boolean ascending = criteria.getDirection().isAscending();
+        String direction = ascending ? " asc" : " desc";
+        String key = sortKey(criteria.getSort());
+        if (afterId != null) {
+            // Сравнение строк (key, id) > (:value, :id) — одна граница диапазона индекса (key, id):
+            // при key > :value OR (key = :value AND id > :id) страница заново читала бы
+            // все предыдущие строки с тем же значением ключа
+            String operator = ascending ? " > " : " < ";
+            if (key == null) {
+                conditions.add("u.id" + operator + ":afterId");
+            } else {
+                conditions.add("(" + key + ", u.id)" + operator + "(:afterValue, :afterId)");
+                params.put("afterValue", afterValue);
+            }
+            params.put("afterId", afterId);
+        }
+
+        StringBuilder jpql = new StringBuilder(UserRepository.DTO_PROJECTION);
+        if (!conditions.isEmpty()) {
+            jpql.append(" where ").append(String.join(" and ", conditions));
+        }
+        jpql.append(" order by ");
+        if (key != null) {
+            jpql.append(key).append(direction).append(", ");
+        }
+        jpql.append("u.id").append(direction);
+
+        TypedQuery<UserDto> query = entityManager.createQuery(jpql.toString(), UserDto.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    private String sortKey(UserSearchDto.SortField sort) {
+        return switch (sort) {
+            case ID -> null;
+            case NAME -> supportsCollate() ? "collate(u.name as " + NAME_COLLATION + ")" : "u.name";
+            case AGE -> "u.age";
+            case CREATED_AT -> "u.createdAt";
+        };
+    }
+
+    // H2 в тестах не знает COLLATE, но и так сравнивает строки посимвольно
+    private boolean supportsCollate() {
+        return entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class)
+                .getJdbcServices().getDialect() instanceof PostgreSQLDialect;
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.service;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Потокобезопасный фильтр Блума для email. Ложноотрицательных ответов
+ * не бывает, доля ложноположительных задаётся при создании.
+ */
+final class EmailBloomFilter {
+    private final AtomicLongArray words;
+    private final int bitSize;
+    private final int hashFunctions;
+
+    EmailBloomFilter(long expectedInsertions, double falsePositiveRate) {
+        long n = Math.max(1, expectedInsertions);
+        long bits = (long) Math.ceil(-n * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        bits = Math.min(Math.max(bits, Long.SIZE), Integer.MAX_VALUE - Long.SIZE);
+        this.words = new AtomicLongArray((int) ((bits + Long.SIZE - 1) / Long.SIZE));
+        this.bitSize = words.length() * Long.SIZE;
+        this.hashFunctions = Math.max(1, (int) Math.round((double) bits / n * Math.log(2)));
+    }
+
+    void put(String value) {
+        long hash = hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            int bit = index(hash1 + i * hash2);
+            long mask = 1L << bit;
+            int word = bit >>> 6;
+            long current;
+            do {
+                current = words.get(word);
+                if ((current & mask) != 0) {
+                    break;
+                }
+            } while (!words.compareAndSet(word, current, current | mask));
+        }
+    }
+
+    boolean mightContain(String value) {
+        long hash = hash(value);
+        int hash1 = (int) hash;
+        int hash2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashFunctions; i++) {
+            int bit = index(hash1 + i * hash2);
+            if ((words.get(bit >>> 6) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int index(int combinedHash) {
+        return (combinedHash < 0 ? ~combinedHash : combinedHash) % bitSize;
+    }
+
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.service;
+
+import com.example.datasource.UserShards;
+import com.example.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.stream.Stream;
+
+/**
+ * Индекс занятых email в памяти. Ответ «точно нет» позволяет пропустить
+ * existsByEmail при создании одного пользователя (пакеты всегда проверяются в БД);
+ * «возможно есть» проверяется в БД,
+ * окончательную гарантию даёт уникальное ограничение на users.email.
+ * Индекс строится в фоне после старта; пока он не построен, любой email
+ * считается возможно занятым.
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+public class EmailIndex {
+    private final UserRepository userRepository;
+    private final UserShards shards;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean enabled;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+
+    private volatile EmailBloomFilter filter;
+    private volatile EmailBloomFilter rebuilding;
+
+    public EmailIndex(UserRepository userRepository,
+                      UserShards shards,
+                      PlatformTransactionManager transactionManager,
+                      @Value("${app.users.email-index.enabled:true}") boolean enabled,
+                      @Value("${app.users.email-index.expected-insertions:1000000}") long expectedInsertions,
+                      @Value("${app.users.email-index.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userRepository = userRepository;
+        this.shards = shards;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.enabled = enabled;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (enabled) {
+            startRebuild();
+        }
+    }
+
+    /**
+     * Полный проход по email всех шардов в отдельном потоке: готовность приложения
+     * не ждёт его, а ошибка оставляет индекс в режиме «возможно есть».
+     */
+    Thread startRebuild() {
+        return Thread.ofVirtual().name("email-index-rebuild").start(() -> {
+            try {
+                readOnlyTransaction.executeWithoutResult(status -> rebuild());
+            } catch (RuntimeException e) {
+                log.warn("Индекс email не построен, email проверяются в БД", e);
+            }
+        });
+    }
+
+    private void rebuild() {
+        long count = shards.onEachShard(shard -> userRepository.count()).stream().mapToLong(Long::longValue).sum();
+        EmailBloomFilter next = new EmailBloomFilter(Math.max(expectedInsertions, count * 2), falsePositiveRate);
+        rebuilding = next;
+        try {
+            shards.onEachShard(shard -> {
+                try (Stream<String> emails = userRepository.streamAllEmails()) {
+                    emails.forEach(next::put);
+                }
+                return null;
+            });
+        } finally {
+            rebuilding = null;
+        }
+        filter = next;
+        log.info("Индекс email построен: {} записей", count);
+    }
+
+    public boolean mightContain(String email) {
+        EmailBloomFilter current = filter;
+        return current == null || current.mightContain(email);
+    }
+
+    public void add(String email) {
+        EmailBloomFilter current = filter;
+        if (current != null) {
+            current.put(email);
+        }
+        EmailBloomFilter next = rebuilding;
+        if (next != null) {
+            next.put(email);
+        }
+    }
+}
@@ -0,0 +1,454 @@
+package com.example.service;
+
+import com.example.datasource.UserShards;
+import com.example.dto.UserBatchResultDto;
+import com.example.dto.UserBulkDeleteDto;
+import com.example.dto.UserBulkDeleteResultDto;
+import com.example.dto.UserChangeDto;
+import com.example.dto.UserCreateDto;
+import com.example.dto.UserDto;
+import com.example.dto.UserLookupResultDto;
+import com.example.dto.UserPageDto;
+import com.example.dto.UserPatchDto;
+import com.example.dto.UserSearchDto;
+import com.example.entity.User;
+import com.example.exception.ConflictException;
+import com.example.exception.ErrorCode;
+import com.example.repository.UserChangeRepository;
+import com.example.repository.UserEmailRepository;
+import com.example.repository.UserRepository;
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Пользователи, разложенные по шардам (app.sharding.urls). Строка пользователя
+ * живёт на шарде {@link UserShards#shardOf(int)}; id выдаются блоками из users_seq
+ * шарда 0 и уникальны между шардами. Уникальность email держит справочник
+ * user_emails: email резервируется на шарде по своему хэшу до записи пользователя
+ * и освобождается при удалении или смене email.
+ * <p>
+ * Операции по id ходят ровно в один шард; списки, поиск и массовое удаление
+ * по дате опрашивают все шарды параллельно, страницы сливаются по ключу сортировки.
+ * Распределённых транзакций нет: пакет создаётся атомарно только в пределах шарда.
+ */
+@Slf4j
+@Service
+@Primary
+@Profile("!reactive")
+@ConditionalOnProperty("app.sharding.urls")
+@Timed(value = "user.service", histogram = true)
+public class ShardedUserService extends UserService {
+    // Совпадает с allocationSize генератора users_seq в JPA-сущности User
+    static final int ID_BLOCK_SIZE = 50;
+
+    private final UserRepository userRepository;
+    private final UserEmailRepository emailRepository;
+    private final UserChangeRepository changeRepository;
+    private final EmailIndex emailIndex;
+    private final UserStatistics statistics;
+    private final UserShards shards;
+
+    private final ReentrantLock idRefillLock = new ReentrantLock();
+    private volatile IdBlock idBlock = new IdBlock(0, -1);
+
+    public ShardedUserService(UserRepository userRepository, Validator validator, EmailIndex emailIndex,
+                              UserStatistics statistics, UserChangeRepository changeRepository,
+                              UserEmailRepository emailRepository, UserShards shards,
+                              TransactionOperations transactions) {
+        super(userRepository, validator, emailIndex, statistics, changeRepository, transactions);
+        this.userRepository = userRepository;
+        this.emailRepository = emailRepository;
+        this.changeRepository = changeRepository;
+        this.emailIndex = emailIndex;
+        this.statistics = statistics;
+        this.shards = shards;
+    }
+
+    @Override
+    public UserDto createUser(UserCreateDto userCreateDTO) {
+        User user = toEntity(userCreateDTO);
+        user.setId(allocateId());
+        user.setVersion(0);
+        if (!reserveEmail(user.getEmail(), user.getId())) {
+            throw new ConflictException(ErrorCode.EMAIL_TAKEN, "Email уже существует: " + user.getEmail());
+        }
+        // Строка коммитится на шарде внутри insert, статистика применяется сразу
+        return statistics.recorded(() -> {
+            insert(user.getId(), List.of(user));
+            emailIndex.add(user.getEmail());
+            UserDto created = convertToDTO(user);
+            statistics.created(created);
+            return created;
+        });
+    }
+
+    @Override
+    public List<UserBatchResultDto> createUsers(List<UserCreateDto> userCreateDTOs) {
+        checkBatchSize(userCreateDTOs);
+
+        UserBatchResultDto[] results = new UserBatchResultDto[userCreateDTOs.size()];
+        Map<String, Integer> indexes = new LinkedHashMap<>();
+        Map<String, User> candidates = new LinkedHashMap<>();
+        for (int i = 0; i < userCreateDTOs.size(); i++) {
+            String violations = validate(userCreateDTOs.get(i));
+            if (violations != null) {
+                results[i] = UserBatchResultDto.failed(i, UserBatchResultDto.Status.INVALID, violations);
+                continue;
+            }
+            String email = userCreateDTOs.get(i).getEmail();
+            if (candidates.containsKey(email)) {
+                results[i] = UserBatchResultDto.failed(i, UserBatchResultDto.Status.CONFLICT,
+                        "Email уже существует: " + email);
+                continue;
+            }
+            User user = toEntity(userCreateDTOs.get(i));
+            user.setId(allocateId());
+            user.setVersion(0);
+            candidates.put(email, user);
+            indexes.put(email, i);
+        }
+
+        Set<String> reserved = reserveEmails(candidates.values().stream()
+                .collect(Collectors.toMap(User::getEmail, User::getId)));
+        Map<Integer, List<User>> usersByShard = new TreeMap<>();
+        candidates.forEach((email, user) -> {
+            if (reserved.contains(email)) {
+                usersByShard.computeIfAbsent(shards.shardOf(user.getId()), shard -> new ArrayList<>()).add(user);
+            } else {
+                int index = indexes.get(email);
+                results[index] = UserBatchResultDto.failed(index, UserBatchResultDto.Status.CONFLICT,
+                        "Email уже существует: " + email);
+            }
+        });
+
+        for (List<User> users : usersByShard.values()) {
+            statistics.recorded(() -> {
+                insert(users.get(0).getId(), users);
+                for (User user : users) {
+                    int index = indexes.get(user.getEmail());
+                    emailIndex.add(user.getEmail());
+                    UserDto created = convertToDTO(user);
+                    statistics.created(created);
+                    results[index] = UserBatchResultDto.created(index, created);
+                }
+                return null;
+            });
+        }
+        return Arrays.asList(results);
+    }
+
+    @Override
+    public UserDto getUserById(Integer id) {
+        return shards.onShard(shards.shardOf(id), () -> super.getUserById(id));
+    }
+
+    @Override
+    public Integer getUserVersion(Integer id) {
+        return shards.onShard(shards.shardOf(id), () -> super.getUserVersion(id));
+    }
+
+    /**
+     * Шарды опрашиваются параллельно, каждый — только по своим id;
+     * шард без запрошенных id в БД не ходит.
+     */
+    @Override
+    public UserLookupResultDto getUsersByIds(List<Integer> ids) {
+        List<Integer> requested = checkLookup(ids);
+        Map<Integer, List<Integer>> idsByShard = requested.stream()
+                .collect(Collectors.groupingBy(shards::shardOf));
+        Map<Integer, UserDto> found = new HashMap<>(requested.size() * 2);
+        shards.onEachShard(shard -> idsByShard.containsKey(shard)
+                ? super.findByIds(idsByShard.get(shard))
+                : Map.<Integer, UserDto>of()).forEach(found::putAll);
+        return lookupResult(requested, found);
+    }
+
+    @Override
+    public UserPageDto getAllUsers(String cursor, Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        List<UserPageDto> pages = shards.onEachShard(shard -> super.getAllUsers(cursor, limit));
+        return merge(pages, pageSize,
+                Comparator.comparing(UserDto::getCreatedAt).thenComparing(UserDto::getId),
+                last -> new UserCursor(last.getCreatedAt(), last.getId()).encode());
+    }
+
+    @Override
+    public UserPageDto searchUsers(UserSearchDto criteria) {
+        int pageSize = resolvePageSize(criteria.getLimit());
+        List<UserPageDto> pages = shards.onEachShard(shard -> super.searchUsers(criteria));
+        return merge(pages, pageSize, searchOrder(criteria),
+                last -> UserSearchCursor.after(last, criteria.getSort(), criteria.getDirection()).encode());
+    }
+
+    /**
+     * Выгружает шарды по очереди; порядок по id соблюдается только внутри шарда.
+     */
+    @Override
+    public long exportUsers(Consumer<UserDto> sink) {
+        long exported = 0;
+        for (int shard = 0; shard < shards.count(); shard++) {
+            exported += shards.onShard(shard, () -> super.exportUsers(sink));
+        }
+        return exported;
+    }
+
+    @Override
+    public UserDto updateUser(Integer id, UserCreateDto userCreateDTO, Integer expectedVersion) {
+        return changeEmail(id, userCreateDTO.getEmail(), () -> super.updateUser(id, userCreateDTO, expectedVersion));
+    }
+
+    @Override
+    public UserDto patchUser(Integer id, UserPatchDto userPatchDTO, Integer expectedVersion) {
+        return changeEmail(id, userPatchDTO.getEmail(), () -> super.patchUser(id, userPatchDTO, expectedVersion));
+    }
+
+    @Override
+    public void deleteUser(Integer id) {
+        shards.onShard(shards.shardOf(id), () -> {
+            super.deleteUser(id);
+            return null;
+        });
+    }
+
+    @Override
+    public UserBulkDeleteResultDto deleteUsers(UserBulkDeleteDto request) {
+        List<UserBulkDeleteResultDto> results = new ArrayList<>();
+        if (checkBulkDelete(request)) {
+            Map<Integer, List<Integer>> idsByShard = request.getIds().stream()
+                    .filter(Objects::nonNull)
+                    .distinct()
+                    .collect(Collectors.groupingBy(shards::shardOf, TreeMap::new, Collectors.toList()));
+            idsByShard.forEach((shard, ids) -> {
+                UserBulkDeleteDto part = new UserBulkDeleteDto();
+                part.setIds(ids);
+                results.add(shards.onShard(shard, () -> super.deleteUsers(part)));
+            });
+        } else {
+            results.addAll(shards.onEachShard(shard -> super.deleteUsers(request)));
+        }
+        return new UserBulkDeleteResultDto(
+                results.stream().mapToLong(UserBulkDeleteResultDto::getDeleted).sum(),
+                results.stream().mapToInt(UserBulkDeleteResultDto::getStatements).sum());
+    }
+
+    @Override
+    void deleted(List<UserDto> users) {
+        super.deleted(users);
+        releaseEmails(users.stream().collect(Collectors.toMap(UserDto::getEmail, UserDto::getId)));
+    }
+
+    /**
+     * Выдаёт id блоками из users_seq шарда 0 по той же схеме, что и pooled-оптимизатор
+     * Hibernate: значение последовательности — верхняя граница блока. Внутри блока id
+     * раздаются без блокировки; лок берётся только на пополнение, и запрос к шарду 0
+     * держит лишь потоки, которым блока не хватило.
+     */
+    int allocateId() {
+        while (true) {
+            IdBlock block = idBlock;
+            long id = block.next.getAndIncrement();
+            if (id <= block.last) {
+                return (int) id;
+            }
+            idRefillLock.lock();
+            try {
+                // Пока ждали лок, блок мог пополнить другой поток
+                if (idBlock == block) {
+                    long hi = shards.onShard(0, userRepository::nextSequenceValue);
+                    idBlock = new IdBlock(hi - ID_BLOCK_SIZE + 1, hi);
+                }
+            } finally {
+                idRefillLock.unlock();
+            }
+        }
+    }
+
+    private static final class IdBlock {
+        private final AtomicLong next;
+        private final long last;
+
+        private IdBlock(long first, long last) {
+            this.next = new AtomicLong(first);
+            this.last = last;
+        }
+    }
+
+    private void insert(int anyId, List<User> users) {
+        try {
+            shards.onShard(shards.shardOf(anyId), () -> {
+                userRepository.insertAll(users);
+                changeRepository.insertAll(UserChangeDto.Type.CREATED,
+                        users.stream().map(this::convertToDTO).toList(), LocalDateTime.now());
+                return null;
+            });
+        } catch (RuntimeException e) {
+            releaseEmails(users.stream().collect(Collectors.toMap(User::getEmail, User::getId)));
+            throw e;
+        }
+    }
+
+    /**
+     * Новый email резервируется до изменения строки, прежний освобождается после.
+     */
+    private UserDto changeEmail(Integer id, String email, Supplier<UserDto> update) {
+        int shard = shards.shardOf(id);
+        String previous = email == null
+                ? null
+                : shards.onShard(shard, () -> userRepository.findDtoById(id)).map(UserDto::getEmail).orElse(null);
+        if (previous == null || previous.equals(email)) {
+            return shards.onShard(shard, update);
+        }
+        if (!reserveEmail(email, id)) {
+            throw new ConflictException(ErrorCode.EMAIL_TAKEN, "Email уже существует: " + email);
+        }
+        UserDto updated;
+        try {
+            updated = shards.onShard(shard, update);
+        } catch (RuntimeException e) {
+            releaseEmails(Map.of(email, id));
+            throw e;
+        }
+        releaseEmails(Map.of(previous, id));
+        return updated;
+    }
+
+    private boolean reserveEmail(String email, int userId) {
+        int shard = shards.shardOfEmail(email);
+        try {
+            shards.onShard(shard, () -> {
+                emailRepository.insertAll(Map.of(email, userId));
+                return null;
+            });
+            return true;
+        } catch (DuplicateKeyException e) {
+            // Запись могла остаться от частично применённого пакета этого же резерва
+            return shards.onShard(shard, () -> emailRepository.findUserId(email))
+                    .filter(owner -> owner == userId)
+                    .isPresent();
+        }
+    }
+
+    /**
+     * Резервирует email пачкой на каждом шарде справочника; при гонке за какой-то
+     * email пачка шарда откатывается и резервируется поштучно. Возвращает занятые успешно.
+     */
+    private Set<String> reserveEmails(Map<String, Integer> userIdsByEmail) {
+        Set<String> reserved = new HashSet<>();
+        for (Map<String, Integer> part : byEmailShard(userIdsByEmail).values()) {
+            int shard = shards.shardOfEmail(part.keySet().iterator().next());
+            Set<String> maybeTaken = part.keySet().stream()
+                    .filter(emailIndex::mightContain)
+                    .collect(Collectors.toSet());
+            try {
+                reserved.addAll(shards.onShard(shard, () -> {
+                    Map<String, Integer> free = new LinkedHashMap<>(part);
+                    if (!maybeTaken.isEmpty()) {
+                        free.keySet().removeAll(emailRepository.findExisting(maybeTaken));
+                    }
+                    if (!free.isEmpty()) {
+                        emailRepository.insertAll(free);
+                    }
+                    return free.keySet();
+                }));
+            } catch (DuplicateKeyException e) {
+                part.forEach((email, userId) -> {
+                    if (reserveEmail(email, userId)) {
+                        reserved.add(email);
+                    }
+                });
+            }
+        }
+        return reserved;
+    }
+
+    private void releaseEmails(Map<String, Integer> userIdsByEmail) {
+        byEmailShard(userIdsByEmail).forEach((shard, part) -> {
+            try {
+                shards.onShard(shard, () -> {
+                    emailRepository.deleteAll(part);
+                    return null;
+                });
+            } catch (RuntimeException e) {
+                // Оставшаяся запись только не даёт занять email заново; удаляется вручную
+                log.warn("Не удалось освободить email в справочнике шарда {}: {}", shard, part.keySet(), e);
+            }
+        });
+    }
+
+    private Map<Integer, Map<String, Integer>> byEmailShard(Map<String, Integer> userIdsByEmail) {
+        Map<Integer, Map<String, Integer>> parts = new TreeMap<>();
+        userIdsByEmail.forEach((email, userId) ->
+                parts.computeIfAbsent(shards.shardOfEmail(email), shard -> new LinkedHashMap<>()).put(email, userId));
+        return parts;
+    }
+
+    /**
+     * Сливает первые страницы шардов: каждая уже отсортирована и начинается после
+     * общего курсора, поэтому первые pageSize записей объединения — первые pageSize глобально.
+     */
+    private static UserPageDto merge(List<UserPageDto> pages, int pageSize, Comparator<UserDto> order,
+                                     Function<UserDto, String> cursor) {
+        List<UserDto> users = pages.stream()
+                .flatMap(page -> page.getItems().stream())
+                .sorted(order)
+                .toList();
+        boolean hasNext = users.size() > pageSize || pages.stream().anyMatch(page -> page.getNext() != null);
+        List<UserDto> page = users.size() > pageSize ? users.subList(0, pageSize) : users;
+        return new UserPageDto(page, hasNext ? cursor.apply(page.get(page.size() - 1)) : null);
+    }
+
+    // Порядок шардов: имена в collation "C" (см. UserRepositoryImpl.search)
+    private static Comparator<UserDto> searchOrder(UserSearchDto criteria) {
+        Comparator<UserDto> key = switch (criteria.getSort()) {
+            case ID -> Comparator.comparing(UserDto::getId);
+            case NAME -> Comparator.comparing(UserDto::getName, ShardedUserService::compareCodePoints);
+            case AGE -> Comparator.comparing(UserDto::getAge);
+            case CREATED_AT -> Comparator.comparing(UserDto::getCreatedAt);
+        };
+        Comparator<UserDto> order = key.thenComparing(UserDto::getId);
+        return criteria.getDirection().isAscending() ? order : order.reversed();
+    }
+
+    // Collation "C" в UTF-8 сравнивает байты, то есть кодовые точки; String.compareTo
+    // сравнивает UTF-16 и расходится с ним на символах вне BMP
+    static int compareCodePoints(String a, String b) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int left = a.codePointAt(i);
+            int right = b.codePointAt(j);
+            if (left != right) {
+                return Integer.compare(left, right);
+            }
+            i += Character.charCount(left);
+            j += Character.charCount(right);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+}
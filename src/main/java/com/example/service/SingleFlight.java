@@ -0,0 +1,51 @@
+package com.example.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Склейка одновременных одинаковых запросов: пока по ключу идёт загрузка,
+ * остальные вызовы с тем же ключом ждут её результат или её исключение,
+ * а не выполняют свою. Запись удаляется сразу по завершении — это не кэш,
+ * следующий вызов загрузит заново. Ожидающий вызов может получить значение,
+ * прочитанное до записи, закоммиченной уже после начала загрузки: это то же
+ * окно, что и у обычного чтения, начатого на мгновение раньше.
+ */
+final class SingleFlight<K, V> {
+    private final ConcurrentHashMap<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+
+    V execute(K key, Supplier<V> loader) {
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> existing = inFlight.putIfAbsent(key, flight);
+        if (existing != null) {
+            return await(existing);
+        }
+        try {
+            V value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            // Исключение загрузки пробрасывается как есть, чтобы обработчик ошибок его узнал
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package com.example.service;
+
+import com.example.datasource.UserShards;
+import com.example.dto.UserChangeDto;
+import com.example.exception.ErrorCode;
+import com.example.exception.GoneException;
+import com.example.exception.ValidationException;
+import com.example.repository.UserChange;
+import com.example.repository.UserChangeRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Profile;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Лента изменений пользователей из outbox user_changes.
+ * <p>
+ * Смещение — позиция txid:id последнего выданного события; при шардировании —
+ * позиции по каждому шарду через точку, события шардов сливаются по времени
+ * изменения, порядок по одному пользователю сохраняется (он живёт на одном шарде).
+ * Внутри шарда события идут по (txid, id) и только от завершённых транзакций
+ * (см. {@link UserChangeRepository#findAfter}): id выдаются при вставке, а коммиты
+ * параллельных транзакций приходят не по порядку, и читатель не должен перескочить
+ * ещё не видимое событие.
+ * <p>
+ * Подписчики, дочитавшие до одного смещения, делят один запрос: результат
+ * держится в кэше в течение poll-interval.
+ * <p>
+ * Смещение позади удалённых по сроку хранения событий отклоняется {@link GoneException}:
+ * клиент должен заново загрузить данные и начать с пустого смещения.
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+public class UserChangeFeed {
+    static final int PRUNE_CHUNK_SIZE = 1000;
+    private static final String OFFSET_SEPARATOR = ".";
+    private static final String POSITION_SEPARATOR = ":";
+
+    private final UserChangeRepository changeRepository;
+    private final UserShards shards;
+    @Getter
+    private final int batchSize;
+    private final Duration retention;
+    private final AsyncCache<String, List<UserChangeDto>> recentBatches;
+
+    public UserChangeFeed(UserChangeRepository changeRepository,
+                          UserShards shards,
+                          @Value("${app.users.changes.batch-size:500}") int batchSize,
+                          @Value("${app.users.changes.poll-interval:PT1S}") Duration pollInterval,
+                          @Value("${app.users.changes.retention:P7D}") Duration retention) {
+        this.changeRepository = changeRepository;
+        this.shards = shards;
+        this.batchSize = batchSize;
+        this.retention = retention;
+        // Загрузка идёт в отдельном виртуальном потоке, а не внутри блокировки кэша
+        this.recentBatches = Caffeine.newBuilder()
+                .expireAfterWrite(pollInterval)
+                .maximumSize(10_000)
+                .executor(Executors.newVirtualThreadPerTaskExecutor())
+                .buildAsync();
+    }
+
+    /**
+     * Проверяет смещение клиента и приводит его к каноническому виду;
+     * пустое — начало хранимой ленты.
+     */
+    public String normalizeOffset(String offset) {
+        return formatOffset(parseOffset(offset));
+    }
+
+    /**
+     * Смещение, с которого подписка начинает чтение: проверенное и ещё не устаревшее.
+     */
+    public String startOffset(String offset) {
+        long[][] positions = parseOffset(offset);
+        shards.onEachShard(shard -> {
+            checkRetained(positions[shard], offset);
+            return null;
+        });
+        return formatOffset(positions);
+    }
+
+    /**
+     * Следующая пачка событий после offset (не больше batch-size), пустая — новых событий нет.
+     */
+    public List<UserChangeDto> poll(String offset) {
+        String start = normalizeOffset(offset);
+        try {
+            return recentBatches.get(start, this::load).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${app.users.changes.prune-interval:PT10M}",
+            initialDelayString = "${app.users.changes.prune-interval:PT10M}")
+    public void prune() {
+        LocalDateTime changedBefore = LocalDateTime.now().minus(retention);
+        long pruned = shards.onEachShard(shard -> {
+            long deleted = 0;
+            int chunk;
+            do {
+                chunk = changeRepository.deleteChangedBefore(changedBefore, PRUNE_CHUNK_SIZE);
+                deleted += chunk;
+            } while (chunk == PRUNE_CHUNK_SIZE);
+            return deleted;
+        }).stream().mapToLong(Long::longValue).sum();
+        if (pruned > 0) {
+            log.info("Из ленты изменений удалено событий старше {}: {}", changedBefore, pruned);
+        }
+    }
+
+    private List<UserChangeDto> load(String offset) {
+        long[][] positions = parseOffset(offset);
+        List<List<UserChange>> pending = shards.onEachShard(shard -> {
+            List<UserChange> changes = changeRepository.findAfter(positions[shard][0], positions[shard][1], batchSize);
+            // После выборки: удаление, прошедшее между ними, тоже будет замечено
+            checkRetained(positions[shard], offset);
+            return changes;
+        });
+
+        // Слияние по времени изменения без перестановок внутри шарда: смещение шарда только растёт
+        List<UserChangeDto> batch = new ArrayList<>();
+        int[] next = new int[pending.size()];
+        while (batch.size() < batchSize) {
+            int pick = -1;
+            for (int shard = 0; shard < pending.size(); shard++) {
+                if (next[shard] < pending.get(shard).size() && (pick < 0
+                        || pending.get(shard).get(next[shard]).getChangedAt()
+                        .isBefore(pending.get(pick).get(next[pick]).getChangedAt()))) {
+                    pick = shard;
+                }
+            }
+            if (pick < 0) {
+                break;
+            }
+            UserChange change = pending.get(pick).get(next[pick]++);
+            positions[pick] = new long[]{change.getTxid(), change.getId()};
+            batch.add(new UserChangeDto(formatOffset(positions), change.getType(), change.getUser(),
+                    change.getChangedAt()));
+        }
+        return batch;
+    }
+
+    // Нулевая позиция — начало хранимой ленты, для неё удалённое не пропущено
+    private void checkRetained(long[] position, String offset) {
+        if (position[0] == 0 && position[1] == 0) {
+            return;
+        }
+        long[] pruned = changeRepository.findPrunedPosition();
+        if (position[0] < pruned[0] || position[0] == pruned[0] && position[1] < pruned[1]) {
+            throw new GoneException(ErrorCode.CHANGES_EXPIRED,
+                    "События после смещения " + offset + " уже удалены из ленты изменений");
+        }
+    }
+
+    private long[][] parseOffset(String offset) {
+        long[][] positions = new long[shards.count()][2];
+        if (offset == null || offset.isEmpty()) {
+            return positions;
+        }
+        String[] parts = offset.split("\\.", -1);
+        if (parts.length != positions.length) {
+            throw new ValidationException("Некорректное смещение ленты изменений: " + offset);
+        }
+        try {
+            for (int i = 0; i < parts.length; i++) {
+                String[] position = parts[i].split(POSITION_SEPARATOR, -1);
+                if (position.length != 2) {
+                    throw new ValidationException("Некорректное смещение ленты изменений: " + offset);
+                }
+                positions[i][0] = Long.parseLong(position[0]);
+                positions[i][1] = Long.parseLong(position[1]);
+                if (positions[i][0] < 0 || positions[i][1] < 0) {
+                    throw new ValidationException("Некорректное смещение ленты изменений: " + offset);
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new ValidationException("Некорректное смещение ленты изменений: " + offset);
+        }
+        return positions;
+    }
+
+    private static String formatOffset(long[][] positions) {
+        return Arrays.stream(positions)
+                .map(position -> position[0] + POSITION_SEPARATOR + position[1])
+                .collect(Collectors.joining(OFFSET_SEPARATOR));
+    }
+}
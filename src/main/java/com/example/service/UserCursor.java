@@ -0,0 +1,42 @@
+package com.example.service;
+
+import com.example.exception.ValidationException;
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Позиция keyset-пагинации: последняя выданная пара (createdAt, id),
+ * передаваемая клиенту в виде непрозрачной base64url-строки.
+ */
+@Value
+public class UserCursor {
+    private static final char SEPARATOR = '|';
+
+    LocalDateTime createdAt;
+    Integer id;
+
+    public String encode() {
+        String raw = createdAt.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static UserCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf(SEPARATOR);
+            if (separator < 0) {
+                throw new ValidationException("Некорректный курсор: " + cursor);
+            }
+            return new UserCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Integer.valueOf(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ValidationException("Некорректный курсор: " + cursor);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.service;
+
+import com.example.dto.UserBatchResultDto;
+import com.example.dto.UserCreateDto;
+import com.example.dto.UserIngestStatusDto;
+import com.example.exception.ErrorCode;
+import com.example.exception.NotFoundException;
+import com.example.exception.ServiceUnavailableException;
+import com.example.exception.TooManyRequestsException;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Асинхронный приём регистраций (app.users.ingest.enabled). Запрос кладётся
+ * в ограниченную очередь и сразу получает id заявки; фоновый поток забирает
+ * заявки пачками и пишет их через createUsers одним пакетным INSERT.
+ * Если пачку отклонило ограничение уникальности (email заняли параллельно через
+ * /batch, синхронный POST или другой экземпляр), она делится пополам, пока
+ * конфликт не сузится до одной заявки, — остальные заявки всё равно записываются.
+ * Временные ошибки БД (нет соединения, таймаут) повторяются до max-attempts раз.
+ * Переполнение очереди — 429, статус заявки хранится ограниченное время.
+ * При остановке приложения очередь дописывается до конца, новые заявки не принимаются.
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+public class UserIngestQueue implements SmartLifecycle {
+    static final String QUEUE_SIZE_METRIC = "user.ingest.queue.size";
+
+    private final UserService userService;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxAttempts;
+    private final Duration retryBackoff;
+    private final BlockingQueue<Submission> queue;
+    private final Cache<String, UserIngestStatusDto> statuses;
+
+    private volatile boolean accepting;
+    private volatile boolean running;
+    private Thread writer;
+
+    public UserIngestQueue(UserService userService,
+                           MeterRegistry meterRegistry,
+                           @Value("${app.users.ingest.enabled:false}") boolean enabled,
+                           @Value("${app.users.ingest.queue-capacity:10000}") int queueCapacity,
+                           @Value("${app.users.ingest.batch-size:500}") int batchSize,
+                           @Value("${app.users.ingest.status-ttl:PT1H}") Duration statusTtl,
+                           @Value("${app.users.ingest.max-attempts:3}") int maxAttempts,
+                           @Value("${app.users.ingest.retry-backoff:PT0.2S}") Duration retryBackoff) {
+        this.userService = userService;
+        this.enabled = enabled;
+        this.batchSize = Math.min(batchSize, UserService.MAX_BATCH_SIZE);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoff = retryBackoff;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.statuses = Caffeine.newBuilder()
+                .maximumSize(Math.max(queueCapacity * 10L, 100_000))
+                .expireAfterWrite(statusTtl)
+                .build();
+        meterRegistry.gaugeCollectionSize(QUEUE_SIZE_METRIC, List.of(), queue);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public UserIngestStatusDto submit(UserCreateDto userCreateDTO) {
+        if (!accepting) {
+            // Экземпляр останавливается: повтор уйдёт на другой, это не перегрузка клиента
+            throw new ServiceUnavailableException(ErrorCode.SERVICE_STOPPING, "Приём заявок остановлен");
+        }
+        String id = UUID.randomUUID().toString();
+        UserIngestStatusDto status = UserIngestStatusDto.queued(id);
+        statuses.put(id, status);
+        if (!queue.offer(new Submission(id, userCreateDTO))) {
+            statuses.invalidate(id);
+            throw new TooManyRequestsException("Очередь регистраций переполнена, повторите запрос позже");
+        }
+        return status;
+    }
+
+    public UserIngestStatusDto getStatus(String id) {
+        UserIngestStatusDto status = statuses.getIfPresent(id);
+        if (status == null) {
+            throw new NotFoundException("Заявка не найдена: " + id);
+        }
+        return status;
+    }
+
+    @Override
+    public void start() {
+        accepting = true;
+        running = true;
+        writer = new Thread(this::drainLoop, "user-ingest-writer");
+        writer.start();
+    }
+
+    @Override
+    public void stop() {
+        accepting = false;
+        running = false;
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        log.info("Очередь регистраций остановлена");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return writer != null && writer.isAlive();
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return enabled;
+    }
+
+    // Останавливаться после веб-сервера, чтобы дописать всё, что он успел принять
+    @Override
+    public int getPhase() {
+        return SmartLifecycle.DEFAULT_PHASE - 4096;
+    }
+
+    private void drainLoop() {
+        List<Submission> batch = new ArrayList<>(batchSize);
+        while (running || !queue.isEmpty()) {
+            try {
+                Submission first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                write(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    void write(List<Submission> batch) {
+        List<UserCreateDto> users = new ArrayList<>(batch.size());
+        for (Submission submission : batch) {
+            users.add(submission.getUser());
+        }
+        List<UserBatchResultDto> results;
+        try {
+            results = createWithRetry(users);
+        } catch (DataIntegrityViolationException e) {
+            if (batch.size() == 1) {
+                Submission submission = batch.get(0);
+                statuses.put(submission.getId(), new UserIngestStatusDto(submission.getId(),
+                        UserIngestStatusDto.State.CONFLICT, null,
+                        "Email уже существует: " + submission.getUser().getEmail()));
+                return;
+            }
+            // Откатилась вся пачка: делим, чтобы записать всё, кроме конфликтующих заявок
+            int half = batch.size() / 2;
+            write(batch.subList(0, half));
+            write(batch.subList(half, batch.size()));
+            return;
+        } catch (RuntimeException e) {
+            log.error("Не удалось записать пачку регистраций ({} шт.)", batch.size(), e);
+            for (Submission submission : batch) {
+                statuses.put(submission.getId(), new UserIngestStatusDto(submission.getId(),
+                        UserIngestStatusDto.State.FAILED, null, e.getMessage()));
+            }
+            return;
+        }
+        for (UserBatchResultDto result : results) {
+            String id = batch.get(result.getIndex()).getId();
+            statuses.put(id, new UserIngestStatusDto(id, toState(result.getStatus()),
+                    result.getUser(), result.getError()));
+        }
+    }
+
+    private List<UserBatchResultDto> createWithRetry(List<UserCreateDto> users) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return userService.createUsers(users);
+            } catch (TransientDataAccessException | RecoverableDataAccessException
+                     | CannotCreateTransactionException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+                log.warn("Временная ошибка записи пачки регистраций, попытка {} из {}: {}",
+                        attempt, maxAttempts, e.getMessage());
+                try {
+                    Thread.sleep(retryBackoff.multipliedBy(attempt));
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    throw e;
+                }
+            }
+        }
+    }
+
+    private static UserIngestStatusDto.State toState(UserBatchResultDto.Status status) {
+        return switch (status) {
+            case CREATED -> UserIngestStatusDto.State.CREATED;
+            case CONFLICT -> UserIngestStatusDto.State.CONFLICT;
+            case INVALID -> UserIngestStatusDto.State.INVALID;
+        };
+    }
+
+    @Getter
+    @RequiredArgsConstructor
+    static final class Submission {
+        private final String id;
+        private final UserCreateDto user;
+    }
+}
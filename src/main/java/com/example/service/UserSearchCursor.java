@@ -0,0 +1,70 @@
+package com.example.service;
+
+import com.example.dto.UserDto;
+import com.example.dto.UserSearchDto.SortField;
+import com.example.exception.ValidationException;
+import lombok.Value;
+import org.springframework.data.domain.Sort;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Позиция keyset-пагинации поиска: значение поля сортировки и id последней
+ * выданной записи. Сортировка и направление зашиты в курсор, чтобы его нельзя
+ * было применить к выдаче с другим порядком.
+ */
+@Value
+public class UserSearchCursor {
+    private static final String SEPARATOR = "|";
+
+    SortField sort;
+    Sort.Direction direction;
+    Comparable<?> value;
+    Integer id;
+
+    public static UserSearchCursor after(UserDto user, SortField sort, Sort.Direction direction) {
+        Comparable<?> value = switch (sort) {
+            case ID -> user.getId();
+            case NAME -> user.getName();
+            case AGE -> user.getAge();
+            case CREATED_AT -> user.getCreatedAt();
+        };
+        return new UserSearchCursor(sort, direction, value, user.getId());
+    }
+
+    public String encode() {
+        // Значение идёт последним: имя может содержать разделитель
+        String raw = sort + SEPARATOR + direction + SEPARATOR + id + SEPARATOR + value;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static UserSearchCursor decode(String cursor, SortField sort, Sort.Direction direction) {
+        String[] parts;
+        try {
+            parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8)
+                    .split("\\|", 4);
+        } catch (IllegalArgumentException e) {
+            throw new ValidationException("Некорректный курсор: " + cursor);
+        }
+        if (parts.length != 4) {
+            throw new ValidationException("Некорректный курсор: " + cursor);
+        }
+        if (!parts[0].equals(sort.name()) || !parts[1].equals(direction.name())) {
+            throw new ValidationException("Курсор получен для другой сортировки: " + parts[0] + " " + parts[1]);
+        }
+        try {
+            Comparable<?> value = switch (sort) {
+                case ID, AGE -> Integer.valueOf(parts[3]);
+                case NAME -> parts[3];
+                case CREATED_AT -> LocalDateTime.parse(parts[3]);
+            };
+            return new UserSearchCursor(sort, direction, value, Integer.valueOf(parts[2]));
+        } catch (IllegalArgumentException | DateTimeParseException e) {
+            throw new ValidationException("Некорректный курсор: " + cursor);
+        }
+    }
+}
@@ -1,69 +1,447 @@
 package com.example.service;
 
+import com.example.config.CacheConfig;
+import com.example.datasource.PrimaryReadPinning;
+import com.example.dto.UserBatchResultDto;
+import com.example.dto.UserBulkDeleteDto;
+import com.example.dto.UserBulkDeleteResultDto;
+import com.example.dto.UserChangeDto;
 import com.example.dto.UserCreateDto;
 import com.example.dto.UserDto;
+import com.example.dto.UserLookupResultDto;
+import com.example.dto.UserPageDto;
+import com.example.dto.UserPatchDto;
+import com.example.dto.UserSearchDto;
+import com.example.dto.UserStatsDto;
 import com.example.entity.User;
 import com.example.exception.ConflictException;
+import com.example.exception.ErrorCode;
 import com.example.exception.NotFoundException;
+import com.example.exception.PreconditionFailedException;
+import com.example.exception.ValidationException;
+import io.micrometer.core.annotation.Timed;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import lombok.RequiredArgsConstructor;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.annotation.Profile;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
 import org.springframework.stereotype.Service;
+import com.example.repository.UpdatedUser;
+import com.example.repository.UserChangeRepository;
 import com.example.repository.UserRepository;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 @RequiredArgsConstructor
+@Profile("!reactive")
+@Timed(value = "user.service", histogram = true)
 public class UserService {
+    static final int DEFAULT_PAGE_SIZE = 50;
+    static final int MAX_PAGE_SIZE = 500;
+    static final int MAX_BATCH_SIZE = 1000;
+    static final int DELETE_CHUNK_SIZE = 1000;
+    static final int MAX_BULK_DELETE_IDS = 100_000;
+    static final int LOOKUP_CHUNK_SIZE = 1000;
+    static final int MAX_LOOKUP_IDS = 10_000;
+
     private final UserRepository userRepository;
+    private final Validator validator;
+    private final EmailIndex emailIndex;
+    private final UserStatistics statistics;
+    private final UserChangeRepository changeRepository;
+    private final TransactionOperations transactions;
+    // Горячие пользователи и email запрашиваются пачками одновременно: одинаковые запросы
+    // в полёте склеиваются в один SELECT, остальные получают его результат. Склейка стоит
+    // перед транзакцией: соединение из пула берёт только ведущий вызов, ожидающие его не держат
+    private final SingleFlight<Integer, Optional<UserDto>> userLookups = new SingleFlight<>();
+    private final SingleFlight<String, Boolean> emailChecks = new SingleFlight<>();
 
     public UserDto createUser(UserCreateDto userCreateDTO) {
-        if (userRepository.existsByEmail(userCreateDTO.getEmail())) {
-            throw new ConflictException("Email уже существует: " + userCreateDTO.getEmail());
+        String email = userCreateDTO.getEmail();
+        if (emailIndex.mightContain(email)
+                && emailChecks.execute(email, () -> userRepository.existsByEmail(email))) {
+            throw new ConflictException(ErrorCode.EMAIL_TAKEN, "Email уже существует: " + email);
         }
+        return transactions.execute(status -> insertUser(userCreateDTO));
+    }
 
-        User user = new User();
-        user.setName(userCreateDTO.getName());
-        user.setEmail(userCreateDTO.getEmail());
-        user.setAge(userCreateDTO.getAge());
+    private UserDto insertUser(UserCreateDto userCreateDTO) {
+        String email = userCreateDTO.getEmail();
+        User savedUser;
+        try {
+            // flush внутри try: нарушение уникальности должно проявиться здесь, а не при коммите
+            savedUser = userRepository.saveAndFlush(toEntity(userCreateDTO));
+        } catch (DataIntegrityViolationException e) {
+            throw new ConflictException(ErrorCode.EMAIL_TAKEN, "Email уже существует: " + email);
+        }
+        emailIndex.add(savedUser.getEmail());
+        UserDto created = convertToDTO(savedUser);
+        changeRepository.insertAll(UserChangeDto.Type.CREATED, List.of(created), LocalDateTime.now());
+        statistics.created(created);
+        return created;
+    }
 
-        user.setCreatedAt(
-                userCreateDTO.getCreatedAt() != null
-                        ? userCreateDTO.getCreatedAt()
-                        : LocalDateTime.now()
-        );
+    @Transactional
+    public List<UserBatchResultDto> createUsers(List<UserCreateDto> userCreateDTOs) {
+        checkBatchSize(userCreateDTOs);
+
+        UserBatchResultDto[] results = new UserBatchResultDto[userCreateDTOs.size()];
+        Set<String> emails = new HashSet<>();
+        for (int i = 0; i < userCreateDTOs.size(); i++) {
+            String violations = validate(userCreateDTOs.get(i));
+            if (violations != null) {
+                results[i] = UserBatchResultDto.failed(i, UserBatchResultDto.Status.INVALID, violations);
+            } else {
+                emails.add(userCreateDTOs.get(i).getEmail());
+            }
+        }
+
+        // Индекс email не используется: он свой у каждого экземпляра и строится не сразу,
+        // а пропущенный занятый email сорвал бы весь пакет одним 409 при flush вместо CONFLICT
+        // у одной записи. Один запрос IN на пакет дешевле этого риска
+        Set<String> taken = emails.isEmpty() ? Set.of() : userRepository.findExistingEmails(emails);
+        Set<String> seen = new HashSet<>();
+        List<User> users = new ArrayList<>();
+        List<Integer> indexes = new ArrayList<>();
+        for (int i = 0; i < userCreateDTOs.size(); i++) {
+            if (results[i] != null) {
+                continue;
+            }
+            String email = userCreateDTOs.get(i).getEmail();
+            if (taken.contains(email) || !seen.add(email)) {
+                results[i] = UserBatchResultDto.failed(i, UserBatchResultDto.Status.CONFLICT,
+                        "Email уже существует: " + email);
+            } else {
+                users.add(toEntity(userCreateDTOs.get(i)));
+                indexes.add(i);
+            }
+        }
 
-        User savedUser = userRepository.save(user);
-        return convertToDTO(savedUser);
+        List<User> savedUsers = userRepository.saveAll(users);
+        List<UserDto> createdUsers = new ArrayList<>(savedUsers.size());
+        for (int k = 0; k < savedUsers.size(); k++) {
+            int index = indexes.get(k);
+            emailIndex.add(savedUsers.get(k).getEmail());
+            UserDto created = convertToDTO(savedUsers.get(k));
+            statistics.created(created);
+            createdUsers.add(created);
+            results[index] = UserBatchResultDto.created(index, created);
+        }
+        if (!createdUsers.isEmpty()) {
+            changeRepository.insertAll(UserChangeDto.Type.CREATED, createdUsers, LocalDateTime.now());
+        }
+        return Arrays.asList(results);
     }
 
+    // Кэш общий для всех клиентов и живёт минуты, заполнять его с отстающей
+    // реплики нельзя: промахи кэша читаются с primary
+    @Cacheable(cacheNames = CacheConfig.USERS_CACHE, key = "#id")
     public UserDto getUserById(Integer id) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new NotFoundException("Пользователь не найден: " + id));
-        return convertToDTO(user);
+        return userLookups.execute(id, () -> PrimaryReadPinning.onPrimary(() -> userRepository.findDtoById(id)))
+                .orElseThrow(() -> new NotFoundException(ErrorCode.USER_NOT_FOUND, "Пользователь не найден: " + id));
+    }
+
+    @Transactional(readOnly = true)
+    public Integer getUserVersion(Integer id) {
+        return userRepository.findVersionById(id)
+                .orElseThrow(() -> new NotFoundException(ErrorCode.USER_NOT_FOUND, "Пользователь не найден: " + id));
+    }
+
+    /**
+     * Пользователи по списку id: один запрос IN на каждые LOOKUP_CHUNK_SIZE id.
+     * Ответ идёт в порядке запроса без повторов, ненайденные id попадают в missing,
+     * а не превращают весь ответ в 404.
+     */
+    @Transactional(readOnly = true)
+    public UserLookupResultDto getUsersByIds(List<Integer> ids) {
+        List<Integer> requested = checkLookup(ids);
+        return lookupResult(requested, findByIds(requested));
+    }
+
+    @Transactional(readOnly = true)
+    public UserPageDto getAllUsers(String cursor, Integer limit) {
+        int pageSize = resolvePageSize(limit);
+        Limit fetchLimit = Limit.of(pageSize + 1);
+
+        List<UserDto> users;
+        if (cursor == null || cursor.isEmpty()) {
+            users = userRepository.findFirstPage(fetchLimit);
+        } else {
+            UserCursor after = UserCursor.decode(cursor);
+            users = userRepository.findPageAfter(after.getCreatedAt(), after.getId(), fetchLimit);
+        }
+
+        boolean hasNext = users.size() > pageSize;
+        List<UserDto> page = hasNext ? users.subList(0, pageSize) : users;
+        String next = null;
+        if (hasNext) {
+            UserDto last = page.get(page.size() - 1);
+            next = new UserCursor(last.getCreatedAt(), last.getId()).encode();
+        }
+
+        return new UserPageDto(page, next);
+    }
+
+    @Transactional(readOnly = true)
+    public UserPageDto searchUsers(UserSearchDto criteria) {
+        if (criteria.getAgeFrom() != null && criteria.getAgeTo() != null
+                && criteria.getAgeFrom() > criteria.getAgeTo()) {
+            throw new ValidationException("ageFrom больше ageTo: " + criteria.getAgeFrom() + " > " + criteria.getAgeTo());
+        }
+        if (criteria.getCreatedFrom() != null && criteria.getCreatedTo() != null
+                && criteria.getCreatedFrom().isAfter(criteria.getCreatedTo())) {
+            throw new ValidationException("createdFrom позже createdTo");
+        }
+        int pageSize = resolvePageSize(criteria.getLimit());
+
+        UserSearchCursor after = criteria.getCursor() == null || criteria.getCursor().isEmpty()
+                ? null
+                : UserSearchCursor.decode(criteria.getCursor(), criteria.getSort(), criteria.getDirection());
+        List<UserDto> users = userRepository.search(criteria,
+                after != null ? after.getValue() : null,
+                after != null ? after.getId() : null,
+                pageSize + 1);
+
+        boolean hasNext = users.size() > pageSize;
+        List<UserDto> page = hasNext ? users.subList(0, pageSize) : users;
+        String next = hasNext
+                ? UserSearchCursor.after(page.get(page.size() - 1), criteria.getSort(), criteria.getDirection()).encode()
+                : null;
+        return new UserPageDto(page, next);
+    }
+
+    @Transactional(readOnly = true)
+    public long exportUsers(Consumer<UserDto> sink) {
+        long exported = 0;
+        try (Stream<UserDto> users = userRepository.streamAllOrderById()) {
+            for (UserDto user : (Iterable<UserDto>) users::iterator) {
+                sink.accept(user);
+                exported++;
+            }
+        }
+        return exported;
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.USERS_CACHE, key = "#id")
+    public UserDto updateUser(Integer id, UserCreateDto userCreateDTO, Integer expectedVersion) {
+        String violations = validate(userCreateDTO);
+        if (violations != null) {
+            throw new ValidationException(violations);
+        }
+        return updateColumns(id, userCreateDTO.getName(), userCreateDTO.getEmail(), userCreateDTO.getAge(),
+                expectedVersion);
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.USERS_CACHE, key = "#id")
+    public UserDto patchUser(Integer id, UserPatchDto userPatchDTO, Integer expectedVersion) {
+        if (userPatchDTO.isEmpty()) {
+            throw new ValidationException("Нет полей для обновления");
+        }
+        return updateColumns(id, userPatchDTO.getName(), userPatchDTO.getEmail(), userPatchDTO.getAge(),
+                expectedVersion);
+    }
+
+    @CacheEvict(cacheNames = CacheConfig.USERS_CACHE, key = "#id")
+    public void deleteUser(Integer id) {
+        statistics.recorded(() -> {
+            userRepository.deleteUserById(id).ifPresent(user -> deleted(List.of(user)));
+            return null;
+        });
+    }
+
+    public UserStatsDto getStats() {
+        return statistics.snapshot();
+    }
+
+    /**
+     * Удаляет пачками по DELETE_CHUNK_SIZE строк, каждая пачка — отдельный
+     * оператор в своей транзакции, чтобы не держать блокировки на весь объём.
+     */
+    @CacheEvict(cacheNames = CacheConfig.USERS_CACHE, allEntries = true)
+    public UserBulkDeleteResultDto deleteUsers(UserBulkDeleteDto request) {
+        long deleted = 0;
+        int statements = 0;
+        if (checkBulkDelete(request)) {
+            List<Integer> ids = new ArrayList<>(new LinkedHashSet<>(request.getIds()));
+            ids.remove(null);
+            for (int from = 0; from < ids.size(); from += DELETE_CHUNK_SIZE) {
+                List<Integer> chunk = ids.subList(from, Math.min(from + DELETE_CHUNK_SIZE, ids.size()));
+                List<UserDto> removed = statistics.recorded(() -> {
+                    List<UserDto> rows = userRepository.deleteUsersByIds(chunk);
+                    deleted(rows);
+                    return rows;
+                });
+                deleted += removed.size();
+                statements++;
+            }
+        } else {
+            List<UserDto> removed;
+            do {
+                removed = statistics.recorded(() -> {
+                    List<UserDto> rows = userRepository.deleteUsersCreatedBefore(
+                            request.getCreatedBefore(), DELETE_CHUNK_SIZE);
+                    deleted(rows);
+                    return rows;
+                });
+                deleted += removed.size();
+                statements++;
+            } while (removed.size() == DELETE_CHUNK_SIZE);
+        }
+        return new UserBulkDeleteResultDto(deleted, statements);
+    }
+
+    /**
+     * Вызывается после каждого удаления с уже удалёнными строками.
+     */
+    void deleted(List<UserDto> users) {
+        users.forEach(statistics::deleted);
+    }
+
+    static void checkBatchSize(List<UserCreateDto> userCreateDTOs) {
+        if (userCreateDTOs == null || userCreateDTOs.isEmpty()) {
+            throw new ValidationException("Список пользователей пуст");
+        }
+        if (userCreateDTOs.size() > MAX_BATCH_SIZE) {
+            throw new ValidationException("Слишком много пользователей в пакете: "
+                    + userCreateDTOs.size() + " (максимум " + MAX_BATCH_SIZE + ")");
+        }
+    }
+
+    /**
+     * Проверяет список id для выборки; возвращает его без повторов и null в исходном порядке.
+     */
+    static List<Integer> checkLookup(List<Integer> ids) {
+        if (ids != null && ids.size() > MAX_LOOKUP_IDS) {
+            throw new ValidationException("Слишком много id в запросе: "
+                    + ids.size() + " (максимум " + MAX_LOOKUP_IDS + ")");
+        }
+        List<Integer> requested = ids == null ? new ArrayList<>() : new ArrayList<>(new LinkedHashSet<>(ids));
+        requested.remove(null);
+        if (requested.isEmpty()) {
+            throw new ValidationException("Список id пуст");
+        }
+        return requested;
+    }
+
+    static UserLookupResultDto lookupResult(List<Integer> requested, Map<Integer, UserDto> found) {
+        List<UserDto> items = new ArrayList<>(found.size());
+        List<Integer> missing = new ArrayList<>();
+        for (Integer id : requested) {
+            UserDto user = found.get(id);
+            if (user != null) {
+                items.add(user);
+            } else {
+                missing.add(id);
+            }
+        }
+        return new UserLookupResultDto(items, missing);
     }
 
-    public List<UserDto> getAllUsers() {
-        return userRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+    Map<Integer, UserDto> findByIds(List<Integer> ids) {
+        Map<Integer, UserDto> found = new HashMap<>(ids.size() * 2);
+        for (int from = 0; from < ids.size(); from += LOOKUP_CHUNK_SIZE) {
+            List<Integer> chunk = ids.subList(from, Math.min(from + LOOKUP_CHUNK_SIZE, ids.size()));
+            for (UserDto user : userRepository.findDtosByIds(chunk)) {
+                found.put(user.getId(), user);
+            }
+        }
+        return found;
     }
 
-    public UserDto updateUser(Integer id, UserCreateDto userCreateDTO) {
-        User user = userRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Пользователь не найден"));
+    /**
+     * Проверяет запрос массового удаления; true — удаление по списку id.
+     */
+    static boolean checkBulkDelete(UserBulkDeleteDto request) {
+        boolean byIds = request.getIds() != null;
+        if (byIds == (request.getCreatedBefore() != null)) {
+            throw new ValidationException("Нужно указать ровно одно из полей: ids или createdBefore");
+        }
+        if (byIds && request.getIds().size() > MAX_BULK_DELETE_IDS) {
+            throw new ValidationException("Слишком много id для удаления: "
+                    + request.getIds().size() + " (максимум " + MAX_BULK_DELETE_IDS + ")");
+        }
+        return byIds;
+    }
 
+    private UserDto updateColumns(Integer id, String name, String email, Integer age, Integer expectedVersion) {
+        Optional<UpdatedUser> updatedUser;
+        try {
+            updatedUser = statistics.recorded(() -> {
+                Optional<UpdatedUser> updated = userRepository.updateColumns(id, name, email, age, expectedVersion);
+                updated.ifPresent(row -> statistics.ageChanged(row.getPreviousAge(), row.getUser().getAge()));
+                return updated;
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw new ConflictException(ErrorCode.EMAIL_TAKEN, "Email уже существует: " + email);
+        }
+        if (updatedUser.isEmpty()) {
+            // Ноль строк: либо пользователя нет, либо If-Match не совпал с текущей версией
+            if (expectedVersion != null && userRepository.findVersionById(id).isPresent()) {
+                throw new PreconditionFailedException("Версия пользователя " + id
+                        + " изменилась: ожидалась " + expectedVersion);
+            }
+            throw new NotFoundException(ErrorCode.USER_NOT_FOUND, "Пользователь не найден: " + id);
+        }
+        if (email != null) {
+            emailIndex.add(email);
+        }
+        return updatedUser.get().getUser();
+    }
+
+    User toEntity(UserCreateDto userCreateDTO) {
+        User user = new User();
         user.setName(userCreateDTO.getName());
         user.setEmail(userCreateDTO.getEmail());
         user.setAge(userCreateDTO.getAge());
 
-        User updatedUser = userRepository.save(user);
-        return convertToDTO(updatedUser);
+        user.setCreatedAt(
+                userCreateDTO.getCreatedAt() != null
+                        ? userCreateDTO.getCreatedAt()
+                        : LocalDateTime.now()
+        );
+        return user;
+    }
+
+    String validate(UserCreateDto userCreateDTO) {
+        if (userCreateDTO == null) {
+            return "Пустой элемент пакета";
+        }
+        Set<ConstraintViolation<UserCreateDto>> violations = validator.validate(userCreateDTO);
+        if (violations.isEmpty()) {
+            return null;
+        }
+        return violations.stream()
+                .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                .sorted()
+                .collect(Collectors.joining("; "));
     }
 
-    public void deleteUser(Integer id) {
-        userRepository.deleteById(id);
+    int resolvePageSize(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_PAGE_SIZE;
+        }
+        if (limit < 1) {
+            throw new ValidationException("limit должен быть положительным: " + limit);
+        }
+        return Math.min(limit, MAX_PAGE_SIZE);
     }
 
     UserDto convertToDTO(User user) {
@@ -72,6 +450,8 @@ public class UserService {
         dto.setName(user.getName());
         dto.setEmail(user.getEmail());
         dto.setAge(user.getAge());
+        dto.setCreatedAt(user.getCreatedAt());
+        dto.setVersion(user.getVersion());
         return dto;
     }
 }
\ No newline at end of file
@@ -0,0 +1,388 @@
+package com.example.service;
+
+import com.example.datasource.UserShards;
+import com.example.dto.UserDto;
+import com.example.dto.UserStatsDto;
+import com.example.repository.UserRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * Агрегаты по пользователям в памяти: общее число, распределение по возрасту
+ * и регистрации по дням. Сервис обновляет их на каждой записи, чтение не ходит в БД;
+ * внутри транзакции изменение применяется только после её коммита.
+ * Периодическая сверка пересчитывает агрегаты по таблице и исправляет дрейф
+ * (записи мимо сервиса, другие экземпляры приложения). При шардировании
+ * шарды пересчитываются параллельно, каждый в своей транзакции.
+ * <p>
+ * Коммит записи и применение её изменения проходят через {@link CommitGate}, а сверка
+ * открывает снимки, пока он закрыт: изменение либо уже применено и есть в снимке,
+ * либо закоммичено после снимка и попадает в pending, но не то и другое сразу.
+ */
+@Slf4j
+@Component
+@Profile("!reactive")
+public class UserStatistics {
+    // Ожидание остальных шардов перед открытием снимков и после него
+    private static final Duration SNAPSHOT_TIMEOUT = Duration.ofSeconds(30);
+    // Сколько новые коммиты могут ждать завершения текущих; иначе сверка переносится
+    private static final Duration COMMIT_DRAIN_TIMEOUT = Duration.ofSeconds(1);
+
+    private final UserRepository userRepository;
+    private final UserShards shards;
+
+    // Запись — под read-lock (параллельно), подмена агрегатов при сверке — под write-lock
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private Aggregates current = new Aggregates();
+    private Aggregates pending;
+    private volatile LocalDateTime reconciledAt;
+    private final CommitGate commitGate = new CommitGate();
+    private final Object reconciling = new Object();
+
+    public UserStatistics(UserRepository userRepository, UserShards shards) {
+        this.userRepository = userRepository;
+        this.shards = shards;
+    }
+
+    /**
+     * Выполняет запись, которая коммитится до возврата (автокоммит, отдельная транзакция
+     * шарда): изменения агрегатов внутри применяются сразу, а сверка не откроет снимок
+     * между коммитом и их применением.
+     */
+    public <T> T recorded(Supplier<T> write) {
+        commitGate.enter();
+        try {
+            return write.get();
+        } finally {
+            commitGate.exit();
+        }
+    }
+
+    public void created(UserDto user) {
+        afterCommit(() -> apply(user.getAge(), user.getCreatedAt(), 1));
+    }
+
+    public void deleted(UserDto user) {
+        afterCommit(() -> apply(user.getAge(), user.getCreatedAt(), -1));
+    }
+
+    public void ageChanged(int previousAge, int age) {
+        if (previousAge == age) {
+            return;
+        }
+        afterCommit(() -> moveAge(previousAge, age));
+    }
+
+    public UserStatsDto snapshot() {
+        lock.readLock().lock();
+        try {
+            return current.toDto(reconciledAt);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(fixedDelayString = "${app.users.stats.reconcile-interval:PT1H}",
+            initialDelayString = "${app.users.stats.reconcile-interval:PT1H}")
+    // Не readOnly: снимок нужен с primary, иначе записи, ещё не доехавшие до реплики,
+    // пропадут из счётчиков до следующей сверки
+    @Transactional(isolation = Isolation.REPEATABLE_READ)
+    public void reconcile() {
+        synchronized (reconciling) {
+            recount();
+        }
+    }
+
+    private void recount() {
+        Aggregates during = new Aggregates();
+        Aggregates fresh = new Aggregates();
+        // Снимок шарда фиксирует первый запрос его транзакции. Транзакции всех шардов уже
+        // держат соединения, когда коммиты приостанавливаются, поэтому ждущие коммита
+        // записи не отнимут у сверки пул
+        CyclicBarrier connected = new CyclicBarrier(shards.count(), () -> {
+            if (!commitGate.pause(COMMIT_DRAIN_TIMEOUT)) {
+                throw new IllegalStateException("Коммиты записей не завершились, сверка статистики отложена");
+            }
+        });
+        CyclicBarrier snapshotted = new CyclicBarrier(shards.count(), () -> {
+            setPending(during);
+            commitGate.resume();
+        });
+        try {
+            shards.onEachShard(shard -> {
+                await(connected);
+                try {
+                    userRepository.openSnapshot();
+                } finally {
+                    await(snapshotted);
+                }
+                for (Object[] row : userRepository.countByAge()) {
+                    fresh.addAge((Integer) row[0], ((Number) row[1]).longValue());
+                }
+                for (Object[] row : userRepository.countByCreatedDate()) {
+                    fresh.addDay((LocalDate) row[0], ((Number) row[1]).longValue());
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            setPending(null);
+            throw e;
+        } finally {
+            commitGate.resume();
+        }
+
+        lock.writeLock().lock();
+        try {
+            fresh.merge(during);
+            long drift = fresh.total.sum() - current.total.sum();
+            current = fresh;
+            pending = null;
+            reconciledAt = LocalDateTime.now();
+            if (drift != 0) {
+                log.info("Статистика пользователей сверена, расхождение total: {}", drift);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void setPending(Aggregates during) {
+        lock.writeLock().lock();
+        try {
+            pending = during;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static void await(CyclicBarrier barrier) {
+        try {
+            barrier.await(SNAPSHOT_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Сверка статистики прервана", e);
+        } catch (BrokenBarrierException | TimeoutException e) {
+            throw new IllegalStateException("Снимки шардов для сверки статистики не открыты", e);
+        }
+    }
+
+    // Откат транзакции (сбой outbox, ошибка коммита) не должен оставлять счётчики неверными до сверки
+    private void afterCommit(Runnable change) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive() || commitGate.isHeld()) {
+            change.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean entered;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                commitGate.enter();
+                entered = true;
+            }
+
+            @Override
+            public void afterCommit() {
+                change.run();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                if (entered) {
+                    entered = false;
+                    commitGate.exit();
+                }
+            }
+        });
+    }
+
+    private void moveAge(int previousAge, int age) {
+        lock.readLock().lock();
+        try {
+            current.moveAge(previousAge, age);
+            if (pending != null) {
+                pending.moveAge(previousAge, age);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(Integer age, LocalDateTime createdAt, long delta) {
+        lock.readLock().lock();
+        try {
+            current.add(age, createdAt, delta);
+            if (pending != null) {
+                pending.add(age, createdAt, delta);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    static int ageBucket(int age) {
+        return Math.floorDiv(age, 10) * 10;
+    }
+
+    /**
+     * Счётчик коммитов, которые идут сейчас, с приостановкой новых на время открытия
+     * снимков. Вход повторный в пределах потока: транзакция с несколькими изменениями
+     * не ждёт сама себя. Приостановку снимает любой поток, а не только поставивший её.
+     */
+    private static final class CommitGate {
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition changed = lock.newCondition();
+        private final ThreadLocal<int[]> depth = ThreadLocal.withInitial(() -> new int[1]);
+        private int committing;
+        private boolean paused;
+
+        boolean isHeld() {
+            return depth.get()[0] > 0;
+        }
+
+        void enter() {
+            int[] held = depth.get();
+            if (held[0] == 0) {
+                lock.lock();
+                try {
+                    while (paused) {
+                        changed.awaitUninterruptibly();
+                    }
+                    committing++;
+                } finally {
+                    lock.unlock();
+                }
+            }
+            held[0]++;
+        }
+
+        void exit() {
+            int[] held = depth.get();
+            if (--held[0] == 0) {
+                lock.lock();
+                try {
+                    if (--committing == 0) {
+                        changed.signalAll();
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+
+        boolean pause(Duration timeout) {
+            lock.lock();
+            try {
+                paused = true;
+                long nanos = timeout.toNanos();
+                while (committing > 0) {
+                    if (nanos <= 0) {
+                        resume();
+                        return false;
+                    }
+                    nanos = changed.awaitNanos(nanos);
+                }
+                return true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                resume();
+                return false;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void resume() {
+            lock.lock();
+            try {
+                paused = false;
+                changed.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private static final class Aggregates {
+        final LongAdder total = new LongAdder();
+        final Map<Integer, LongAdder> ages = new ConcurrentHashMap<>();
+        final Map<LocalDate, LongAdder> days = new ConcurrentHashMap<>();
+
+        void add(Integer age, LocalDateTime createdAt, long delta) {
+            total.add(delta);
+            if (age != null) {
+                ages.computeIfAbsent(ageBucket(age), bucket -> new LongAdder()).add(delta);
+            }
+            if (createdAt != null) {
+                days.computeIfAbsent(createdAt.toLocalDate(), day -> new LongAdder()).add(delta);
+            }
+        }
+
+        void moveAge(int previousAge, int age) {
+            ages.computeIfAbsent(ageBucket(previousAge), bucket -> new LongAdder()).decrement();
+            ages.computeIfAbsent(ageBucket(age), bucket -> new LongAdder()).increment();
+        }
+
+        void addAge(int age, long count) {
+            total.add(count);
+            ages.computeIfAbsent(ageBucket(age), bucket -> new LongAdder()).add(count);
+        }
+
+        void addDay(LocalDate day, long count) {
+            days.computeIfAbsent(day, d -> new LongAdder()).add(count);
+        }
+
+        void merge(Aggregates other) {
+            total.add(other.total.sum());
+            other.ages.forEach((bucket, count) ->
+                    ages.computeIfAbsent(bucket, b -> new LongAdder()).add(count.sum()));
+            other.days.forEach((day, count) ->
+                    days.computeIfAbsent(day, d -> new LongAdder()).add(count.sum()));
+        }
+
+        UserStatsDto toDto(LocalDateTime reconciledAt) {
+            Map<String, Long> ageHistogram = new LinkedHashMap<>();
+            new TreeMap<>(ages).forEach((bucket, count) -> {
+                long value = count.sum();
+                if (value != 0) {
+                    ageHistogram.put(bucket + "-" + (bucket + 9), value);
+                }
+            });
+            Map<LocalDate, Long> signupsPerDay = new LinkedHashMap<>();
+            new TreeMap<>(days).forEach((day, count) -> {
+                long value = count.sum();
+                if (value != 0) {
+                    signupsPerDay.put(day, value);
+                }
+            });
+            return new UserStatsDto(total.sum(), ageHistogram, signupsPerDay, reconciledAt);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+-- Базовая схема пользователей (сущность User).
+-- IF NOT EXISTS: базы, созданные раньше через ddl-auto=update, проходят миграцию
+-- без изменений (spring.flyway.baseline-version=0, поэтому V1 выполняется и на них).
+
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS users (
+    id         INTEGER      NOT NULL PRIMARY KEY,
+    name       VARCHAR(255) NOT NULL,
+    email      VARCHAR(255) NOT NULL UNIQUE,
+    age        INTEGER      NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    version    INTEGER      DEFAULT 0 NOT NULL
+);
+
+-- Keyset-пагинация по (created_at, id) и сортировки поиска
+CREATE INDEX IF NOT EXISTS idx_users_created_at_id ON users (created_at, id);
+CREATE INDEX IF NOT EXISTS idx_users_age_id ON users (age, id);
+CREATE INDEX IF NOT EXISTS idx_users_name_id ON users (name, id);
@@ -0,0 +1,6 @@
+-- Индексы, которые нельзя описать через @Table(indexes = ...).
+
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+-- Подстрочный и префиксный поиск по имени: lower(name) LIKE '%...%' / '...%'
+CREATE INDEX IF NOT EXISTS idx_users_name_trgm ON users USING gin (lower(name) gin_trgm_ops);
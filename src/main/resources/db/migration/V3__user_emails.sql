@@ -0,0 +1,7 @@
+-- Справочник email → id для шардирования (app.sharding.urls): запись лежит на шарде
+-- по хэшу email и держит уникальность email между шардами. Без шардирования таблица пуста.
+
+CREATE TABLE IF NOT EXISTS user_emails (
+    email   VARCHAR(255) NOT NULL PRIMARY KEY,
+    user_id INTEGER      NOT NULL
+);
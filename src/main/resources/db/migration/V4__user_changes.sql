@@ -0,0 +1,17 @@
+-- Outbox изменений пользователей для ленты GET /api/users/changes: строка пишется
+-- в той же транзакции (или том же операторе), что и изменение users. id — смещение ленты.
+
+CREATE TABLE IF NOT EXISTS user_changes (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    type       VARCHAR(16)  NOT NULL,
+    user_id    INTEGER      NOT NULL,
+    name       VARCHAR(255) NOT NULL,
+    email      VARCHAR(255) NOT NULL,
+    age        INTEGER      NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    version    INTEGER      NOT NULL,
+    changed_at TIMESTAMP(6) NOT NULL
+);
+
+-- Очистка по сроку хранения
+CREATE INDEX IF NOT EXISTS idx_user_changes_changed_at ON user_changes (changed_at);
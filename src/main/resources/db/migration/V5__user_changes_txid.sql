@@ -0,0 +1,8 @@
+-- Порядок ленты изменений по видимости коммита: id выдаётся при вставке, и строка
+-- с меньшим id может закоммититься позже строки с большим. Читатель идёт по (txid, id)
+-- и отдаёт только строки транзакций ниже pg_snapshot_xmin — они уже завершены, и новых
+-- строк с таким txid не появится. Уже записанные строки получают txid этой миграции.
+
+ALTER TABLE user_changes ADD COLUMN IF NOT EXISTS txid xid8 NOT NULL DEFAULT pg_current_xact_id();
+
+CREATE INDEX IF NOT EXISTS idx_user_changes_txid_id ON user_changes (txid, id);
@@ -0,0 +1,9 @@
+-- На базах, созданных раньше через ddl-auto=update без users_seq, V1 создала
+-- последовательность с 1, хотя пользователи уже есть: новые id (блоки pooled по 50
+-- и блоки реактивного стека) совпали бы с существующими. Сдвигаем её за max(id).
+-- Назад не двигаем: работающие экземпляры могут ещё раздавать уже выданный блок.
+-- На пустой таблице ничего не меняется.
+
+SELECT setval('users_seq', GREATEST(MAX(id), (SELECT last_value FROM users_seq)))
+FROM users
+HAVING MAX(id) IS NOT NULL;
@@ -0,0 +1,6 @@
+-- Поиск сортирует имена в collation "C" (по кодовым точкам): только этот порядок
+-- одинаков на всех шардах и воспроизводим в Java при слиянии их страниц.
+-- Индекс с collation базы по умолчанию для ORDER BY name COLLATE "C" не годится.
+
+CREATE INDEX IF NOT EXISTS idx_users_name_c_id ON users (name COLLATE "C", id);
+DROP INDEX IF EXISTS idx_users_name_id;
@@ -0,0 +1,11 @@
+-- Позиция (txid, id) последнего удалённого по сроку хранения события ленты. Смещение
+-- клиента позади неё означает, что часть событий после него уже удалена: такому
+-- клиенту лента отвечает 410, а не продолжает молча с самого старого события.
+
+CREATE TABLE IF NOT EXISTS user_changes_pruned (
+    id        INTEGER NOT NULL PRIMARY KEY CHECK (id = 1),
+    txid      xid8    NOT NULL,
+    change_id BIGINT  NOT NULL
+);
+
+INSERT INTO user_changes_pruned (id, txid, change_id) VALUES (1, '0', 0) ON CONFLICT (id) DO NOTHING;
@@ -0,0 +1,82 @@
+package com.example.controller;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimitTest {
+    private static final long THRESHOLD = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @Test
+    void rejectsOverLimitUntilReleased() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(2, 1, 10, THRESHOLD, 0.5);
+
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+
+        limit.release(0, false);
+        assertTrue(limit.tryAcquire());
+    }
+
+    @Test
+    void growsWhileFastAndFullyUsed() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(4, 1, 5, THRESHOLD, 0.5);
+
+        for (int i = 0; i < 100; i++) {
+            fill(limit);
+            drain(limit, 0, false);
+        }
+
+        assertEquals(5, limit.getLimit());
+    }
+
+    @Test
+    void doesNotGrowWhenMostlyIdle() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(10, 1, 100, THRESHOLD, 0.5);
+
+        for (int i = 0; i < 100; i++) {
+            limit.tryAcquire();
+            limit.release(0, false);
+        }
+
+        assertEquals(10, limit.getLimit());
+    }
+
+    @Test
+    void backsOffOncePerThresholdOnSlowOrOverloadedResponses() {
+        AdaptiveConcurrencyLimit limit = new AdaptiveConcurrencyLimit(8, 3, 10, THRESHOLD, 0.5);
+
+        fill(limit);
+        drain(limit, THRESHOLD * 2, false);
+        // Вся пачка медленных ответов — один сигнал, а не восемь
+        assertEquals(4, limit.getLimit());
+
+        AdaptiveConcurrencyLimit overloaded = new AdaptiveConcurrencyLimit(8, 3, 10, 0, 0.5);
+        for (int i = 0; i < 5; i++) {
+            overloaded.tryAcquire();
+            overloaded.release(0, true);
+        }
+        assertEquals(3, overloaded.getLimit());
+    }
+
+    @Test
+    void rejectsInconsistentSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(1, 2, 10, THRESHOLD, 0.5));
+        assertThrows(IllegalArgumentException.class, () -> new AdaptiveConcurrencyLimit(5, 1, 10, THRESHOLD, 1.0));
+    }
+
+    private static void fill(AdaptiveConcurrencyLimit limit) {
+        while (limit.tryAcquire()) {
+            // занимаем все места
+        }
+    }
+
+    private static void drain(AdaptiveConcurrencyLimit limit, long latencyNanos, boolean overloaded) {
+        while (limit.getInFlight() > 0) {
+            limit.release(latencyNanos, overloaded);
+        }
+    }
+}
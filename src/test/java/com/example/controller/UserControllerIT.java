@@ -2,6 +2,7 @@ package com.example.controller;
 
 import com.example.entity.User;
 import com.example.repository.UserRepository;
+import com.jayway.jsonpath.JsonPath;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -9,6 +10,7 @@ import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMock
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.junit.jupiter.Container;
 import org.testcontainers.junit.jupiter.Testcontainers;
@@ -16,6 +18,7 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import java.time.LocalDateTime;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -69,6 +72,31 @@ class UserControllerIT {
                 .andExpect(jsonPath("$.age", is(30)));
     }
 
+    @Test
+    void createUsersInBatch() throws Exception {
+        createTestUser("Existing", "existing@test.com", 50);
+
+        String batchJson = "[" +
+                "{\"name\":\"User1\",\"email\":\"user1@test.com\",\"age\":20}," +
+                "{\"name\":\"Existing\",\"email\":\"existing@test.com\",\"age\":30}," +
+                "{\"name\":\"User2\",\"email\":\"user2@test.com\",\"age\":40}," +
+                "{\"name\":\"\",\"email\":\"broken\",\"age\":40}" +
+                "]";
+
+        mockMvc.perform(post("/api/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(batchJson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(4)))
+                .andExpect(jsonPath("$[0].status", is("CREATED")))
+                .andExpect(jsonPath("$[0].user.id", notNullValue()))
+                .andExpect(jsonPath("$[1].status", is("CONFLICT")))
+                .andExpect(jsonPath("$[2].status", is("CREATED")))
+                .andExpect(jsonPath("$[3].status", is("INVALID")));
+
+        assertEquals(3, userRepository.count());
+    }
+
     @Test
     void getUserById() throws Exception {
         User savedUser = createTestUser("test", "test@test.com", 25);
@@ -88,9 +116,49 @@ class UserControllerIT {
 
         mockMvc.perform(get("/api/users"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$", hasSize(2)))
-                .andExpect(jsonPath("$[0].name", is("User1")))
-                .andExpect(jsonPath("$[1].name", is("User2")));
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.items[0].name", is("User1")))
+                .andExpect(jsonPath("$.items[1].name", is("User2")))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    void getAllUsersPaginatesWithCursor() throws Exception {
+        createTestUser("User1", "user1@test.com", 20);
+        createTestUser("User2", "user2@test.com", 30);
+        createTestUser("User3", "user3@test.com", 40);
+
+        String body = mockMvc.perform(get("/api/users").param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(2)))
+                .andExpect(jsonPath("$.next", notNullValue()))
+                .andReturn().getResponse().getContentAsString();
+        String next = JsonPath.read(body, "$.next");
+
+        mockMvc.perform(get("/api/users").param("cursor", next).param("limit", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.items[0].name", is("User3")))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    void exportUsersAsNdjson() throws Exception {
+        createTestUser("User1", "user1@test.com", 20);
+        createTestUser("User2", "user2@test.com", 30);
+
+        MvcResult result = mockMvc.perform(get("/api/users/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("User1", JsonPath.read(lines[0], "$.name"));
+        assertEquals("User2", JsonPath.read(lines[1], "$.name"));
     }
 
     @Test
@@ -1,26 +1,66 @@
 package com.example.controller;
 
+import com.example.config.BinaryFormatsConfig;
+import com.example.dto.UserBatchResultDto;
+import com.example.dto.UserBulkDeleteDto;
+import com.example.dto.UserBulkDeleteResultDto;
+import com.example.dto.UserChangeDto;
 import com.example.dto.UserCreateDto;
 import com.example.dto.UserDto;
+import com.example.dto.UserIngestStatusDto;
+import com.example.dto.UserLookupDto;
+import com.example.dto.UserLookupResultDto;
+import com.example.dto.UserPageDto;
+import com.example.dto.UserPatchDto;
+import com.example.dto.UserSearchDto;
+import com.example.dto.UserStatsDto;
+import com.example.exception.ConflictException;
+import com.example.exception.ErrorCode;
+import com.example.exception.GoneException;
+import com.example.exception.NotFoundException;
+import com.example.exception.PreconditionFailedException;
+import com.example.exception.ServiceUnavailableException;
+import com.example.exception.TooManyRequestsException;
+import com.example.exception.ValidationException;
+import com.example.service.UserChangeFeed;
+import com.example.service.UserIngestQueue;
 import com.example.service.UserService;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Sort;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.CannotCreateTransactionException;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(UserController.class)
+@Import({SimpleMeterRegistry.class, BinaryFormatsConfig.class, UserChangeStreams.class})
 class UserControllerTest {
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
 
     @Autowired
     private MockMvc mockMvc;
@@ -28,9 +68,21 @@ class UserControllerTest {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private ConcurrencyLimitInterceptor concurrencyLimitInterceptor;
+
     @MockBean
     private UserService userService;
 
+    @MockBean
+    private UserIngestQueue ingestQueue;
+
+    @MockBean
+    private UserChangeFeed changeFeed;
+
     private UserDto createTestUserDto() {
         UserDto dto = new UserDto();
         dto.setId(1);
@@ -38,6 +90,7 @@ class UserControllerTest {
         dto.setEmail("test@example.com");
         dto.setAge(25);
         dto.setCreatedAt(LocalDateTime.now());
+        dto.setVersion(3);
         return dto;
     }
 
@@ -65,6 +118,109 @@ class UserControllerTest {
                 .andExpect(jsonPath("$.name").value("Test User"));
     }
 
+    @Test
+    void createUserQueuedWhenIngestEnabled() throws Exception {
+        Mockito.when(ingestQueue.isEnabled()).thenReturn(true);
+        Mockito.when(ingestQueue.submit(Mockito.any(UserCreateDto.class)))
+                .thenReturn(UserIngestStatusDto.queued("abc"));
+
+        mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(createTestUserCreateDto())))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string(HttpHeaders.LOCATION, "/api/users/ingest/abc"))
+                .andExpect(jsonPath("$.id").value("abc"))
+                .andExpect(jsonPath("$.state").value("QUEUED"));
+
+        Mockito.verify(userService, Mockito.never()).createUser(Mockito.any());
+    }
+
+    @Test
+    void createUserRejectedWhenIngestQueueFull() throws Exception {
+        Mockito.when(ingestQueue.isEnabled()).thenReturn(true);
+        Mockito.when(ingestQueue.submit(Mockito.any(UserCreateDto.class)))
+                .thenThrow(new TooManyRequestsException("Очередь регистраций переполнена"));
+
+        mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(createTestUserCreateDto())))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.status").value(429))
+                .andExpect(jsonPath("$.code").value("TOO_MANY_REQUESTS"));
+    }
+
+    @Test
+    void createUserUnavailableWhileIngestQueueStops() throws Exception {
+        Mockito.when(ingestQueue.isEnabled()).thenReturn(true);
+        Mockito.when(ingestQueue.submit(Mockito.any(UserCreateDto.class)))
+                .thenThrow(new ServiceUnavailableException(ErrorCode.SERVICE_STOPPING, "Приём заявок остановлен"));
+
+        mockMvc.perform(post("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(createTestUserCreateDto())))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                .andExpect(jsonPath("$.code").value("SERVICE_STOPPING"));
+    }
+
+    @Test
+    void shedsPointReadsOverLimitWithoutTouchingHeavyOperations() throws Exception {
+        AdaptiveConcurrencyLimit pointReads = concurrencyLimitInterceptor.limit(ConcurrencyLimited.Cost.POINT_READ);
+        int held = 0;
+        while (pointReads.tryAcquire()) {
+            held++;
+        }
+        try {
+            mockMvc.perform(get("/api/users/1"))
+                    .andExpect(status().isServiceUnavailable())
+                    .andExpect(header().string(HttpHeaders.RETRY_AFTER, "1"))
+                    .andExpect(jsonPath("$.code").value("SERVICE_OVERLOADED"));
+            Mockito.verifyNoInteractions(userService);
+
+            Mockito.when(userService.getAllUsers(null, null)).thenReturn(new UserPageDto(List.of(), null));
+            mockMvc.perform(get("/api/users")).andExpect(status().isOk());
+            assertEquals(0, concurrencyLimitInterceptor.limit(ConcurrencyLimited.Cost.HEAVY).getInFlight());
+        } finally {
+            for (int i = 0; i < held; i++) {
+                pointReads.release(0, false);
+            }
+        }
+        assertEquals(1.0, meterRegistry.get(ConcurrencyLimitInterceptor.REJECTED_METRIC)
+                .tag("cost", "point_read").counter().count());
+    }
+
+    @Test
+    void getIngestStatus() throws Exception {
+        Mockito.when(ingestQueue.getStatus("abc")).thenReturn(new UserIngestStatusDto("abc",
+                UserIngestStatusDto.State.CREATED, createTestUserDto(), null));
+
+        mockMvc.perform(get("/api/users/ingest/abc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.state").value("CREATED"))
+                .andExpect(jsonPath("$.user.id").value(1));
+    }
+
+    @Test
+    void createUsersInBatch() throws Exception {
+        UserCreateDto requestDto = createTestUserCreateDto();
+        List<UserBatchResultDto> results = List.of(
+                UserBatchResultDto.created(0, createTestUserDto()),
+                UserBatchResultDto.failed(1, UserBatchResultDto.Status.CONFLICT, "Email уже существует"));
+
+        Mockito.when(userService.createUsers(List.of(requestDto, requestDto))).thenReturn(results);
+
+        mockMvc.perform(post("/api/users/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(List.of(requestDto, requestDto))))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(2))
+                .andExpect(jsonPath("$[0].status").value("CREATED"))
+                .andExpect(jsonPath("$[0].user.id").value(1))
+                .andExpect(jsonPath("$[1].index").value(1))
+                .andExpect(jsonPath("$[1].status").value("CONFLICT"));
+    }
+
     @Test
     void getUserById() throws Exception {
         UserDto responseDto = createTestUserDto();
@@ -72,8 +228,120 @@ class UserControllerTest {
 
         mockMvc.perform(get("/api/users/1"))
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
                 .andExpect(jsonPath("$.id").value(1))
-                .andExpect(jsonPath("$.email").value("test@example.com"));
+                .andExpect(jsonPath("$.email").value("test@example.com"))
+                .andExpect(jsonPath("$.version").doesNotExist());
+    }
+
+    @Test
+    void getUserByIdNotModifiedSkipsLoadingUser() throws Exception {
+        Mockito.when(userService.getUserVersion(1)).thenReturn(3);
+
+        mockMvc.perform(get("/api/users/1").header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(content().string(""));
+
+        Mockito.verify(userService, Mockito.never()).getUserById(1);
+    }
+
+    @Test
+    void getUserByIdAsCborIgnoresJsonETag() throws Exception {
+        Mockito.when(userService.getUserVersion(1)).thenReturn(3);
+        Mockito.when(userService.getUserById(1)).thenReturn(createTestUserDto());
+
+        mockMvc.perform(get("/api/users/1")
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"3\""))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3-cbor\""))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+
+        mockMvc.perform(get("/api/users/1")
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .header(HttpHeaders.IF_NONE_MATCH, "\"3-cbor\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT));
+    }
+
+    @Test
+    void getUserByIdETagSuffixFollowsSelectedConverter() throws Exception {
+        Mockito.when(userService.getUserById(1)).thenReturn(createTestUserDto());
+
+        mockMvc.perform(get("/api/users/1").header(HttpHeaders.ACCEPT, "application/*;q=0.9, application/cbor;q=0.9"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3-cbor\""));
+
+        mockMvc.perform(get("/api/users/1")
+                        .header(HttpHeaders.ACCEPT, "application/*;q=0.9, application/cbor;q=0.9, application/json"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""));
+
+        mockMvc.perform(get("/api/users/1").header(HttpHeaders.ACCEPT, "*/*;q=0.5, application/x-jackson-smile;q=0.5"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SMILE))
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3-x-jackson-smile\""));
+    }
+
+    @Test
+    void getUserByIdWithStaleETagReturnsUser() throws Exception {
+        Mockito.when(userService.getUserVersion(1)).thenReturn(3);
+        Mockito.when(userService.getUserById(1)).thenReturn(createTestUserDto());
+
+        mockMvc.perform(get("/api/users/1").header(HttpHeaders.IF_NONE_MATCH, "\"2\""))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
+                .andExpect(jsonPath("$.id").value(1));
+    }
+
+    @Test
+    void getUserByIdNotFoundIsCountedAsError() throws Exception {
+        Mockito.when(userService.getUserById(404)).thenThrow(new NotFoundException(ErrorCode.USER_NOT_FOUND, "Пользователь не найден: 404"));
+        double before = meterRegistry.counter("user.api.errors",
+                "exception", "NotFoundException", "status", "404").count();
+
+        mockMvc.perform(get("/api/users/404"))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.status").value(404))
+                .andExpect(jsonPath("$.code").value("USER_NOT_FOUND"))
+                .andExpect(jsonPath("$.path").value("/api/users/404"));
+
+        assertEquals(before + 1, meterRegistry.counter("user.api.errors",
+                "exception", "NotFoundException", "status", "404").count());
+    }
+
+    @Test
+    void domainExceptionsDoNotCaptureStackTrace() {
+        assertEquals(0, new NotFoundException("Пользователь не найден: 1").getStackTrace().length);
+        assertEquals(0, new ConflictException(ErrorCode.EMAIL_TAKEN, "Email уже существует: a@b.c")
+                .getStackTrace().length);
+    }
+
+    @Test
+    void exhaustedConnectionPoolReturnsServiceUnavailable() throws Exception {
+        Mockito.when(userService.getUserById(1))
+                .thenThrow(new CannotCreateTransactionException("Connection is not available"));
+
+        mockMvc.perform(get("/api/users/1"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.status").value(503))
+                .andExpect(jsonPath("$.code").value("DATABASE_UNAVAILABLE"));
+    }
+
+    @Test
+    void connectionFailureOutsideTransactionReturnsServiceUnavailable() throws Exception {
+        // deleteUser пишет одним оператором через NamedParameterJdbcTemplate без транзакции
+        Mockito.doThrow(new CannotGetJdbcConnectionException("Failed to obtain JDBC Connection"))
+                .when(userService).deleteUser(1);
+
+        mockMvc.perform(delete("/api/users/1"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.status").value(503))
+                .andExpect(jsonPath("$.code").value("DATABASE_UNAVAILABLE"));
     }
 
     @Test
@@ -85,15 +353,193 @@ class UserControllerTest {
 
         List<UserDto> users = Arrays.asList(user1, user2);
 
-        Mockito.when(userService.getAllUsers()).thenReturn(users);
+        Mockito.when(userService.getAllUsers(null, null)).thenReturn(new UserPageDto(users, "next-cursor"));
 
         mockMvc.perform(get("/api/users"))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$.length()").value(2))
-                .andExpect(jsonPath("$[0].id").value(1))
-                .andExpect(jsonPath("$[0].name").value("Test User"))
-                .andExpect(jsonPath("$[1].id").value(2))
-                .andExpect(jsonPath("$[1].name").value("Another User"));
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.items.length()").value(2))
+                .andExpect(jsonPath("$.items[0].id").value(1))
+                .andExpect(jsonPath("$.items[0].name").value("Test User"))
+                .andExpect(jsonPath("$.items[1].id").value(2))
+                .andExpect(jsonPath("$.items[1].name").value("Another User"))
+                .andExpect(jsonPath("$.next").value("next-cursor"));
+    }
+
+    @Test
+    void getUsersByIds() throws Exception {
+        UserDto user2 = createTestUserDto();
+        user2.setId(2);
+        Mockito.when(userService.getUsersByIds(List.of(2, 7, 1)))
+                .thenReturn(new UserLookupResultDto(List.of(user2, createTestUserDto()), List.of(7)));
+
+        mockMvc.perform(get("/api/users").param("ids", "2,7,1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(2))
+                .andExpect(jsonPath("$.items[1].id").value(1))
+                .andExpect(jsonPath("$.missing[0]").value(7));
+        Mockito.verify(userService, Mockito.never()).getAllUsers(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    void lookupUsersByPostedIds() throws Exception {
+        UserLookupDto request = new UserLookupDto();
+        request.setIds(List.of(1, 5));
+        Mockito.when(userService.getUsersByIds(List.of(1, 5)))
+                .thenReturn(new UserLookupResultDto(List.of(createTestUserDto()), List.of(5)));
+
+        mockMvc.perform(post("/api/users/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(1))
+                .andExpect(jsonPath("$.missing[0]").value(5));
+    }
+
+    @Test
+    void getAllUsersAsCbor() throws Exception {
+        UserDto user = createTestUserDto();
+        Mockito.when(userService.getAllUsers(null, null)).thenReturn(new UserPageDto(List.of(user), "next-cursor"));
+
+        byte[] body = mockMvc.perform(get("/api/users").accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode page = Jackson2ObjectMapperBuilder.cbor().build().readTree(body);
+        assertEquals(1, page.get("items").get(0).get("id").asInt());
+        assertEquals("Test User", page.get("items").get(0).get("name").asText());
+        assertEquals("next-cursor", page.get("next").asText());
+    }
+
+    @Test
+    void createUserFromSmile() throws Exception {
+        ObjectMapper smileMapper = Jackson2ObjectMapperBuilder.smile().build();
+        Mockito.when(userService.createUser(createTestUserCreateDto())).thenReturn(createTestUserDto());
+
+        byte[] body = mockMvc.perform(post("/api/users")
+                        .contentType(SMILE)
+                        .accept(SMILE)
+                        .content(smileMapper.writeValueAsBytes(createTestUserCreateDto())))
+                .andExpect(status().isCreated())
+                .andExpect(content().contentType(SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals("test@example.com", smileMapper.readTree(body).get("email").asText());
+    }
+
+    @Test
+    void getAllUsersNotModifiedWhenPageUnchanged() throws Exception {
+        UserPageDto page = new UserPageDto(List.of(createTestUserDto()), null);
+        Mockito.when(userService.getAllUsers(null, null)).thenReturn(page);
+
+        String etag = mockMvc.perform(get("/api/users"))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/users").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        page.getItems().get(0).setVersion(4);
+        mockMvc.perform(get("/api/users").header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(1));
+    }
+
+    @Test
+    void getAllUsersETagDependsOnFormat() throws Exception {
+        Mockito.when(userService.getAllUsers(null, null))
+                .thenReturn(new UserPageDto(List.of(createTestUserDto()), null));
+
+        String etag = mockMvc.perform(get("/api/users"))
+                .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/users").accept(SMILE).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SMILE))
+                .andExpect(header().string(HttpHeaders.ETAG, etag.replaceFirst("\"$", "-x-jackson-smile\"")));
+    }
+
+    @Test
+    void getAllUsersPassesCursorAndLimit() throws Exception {
+        Mockito.when(userService.getAllUsers("abc", 10)).thenReturn(new UserPageDto(List.of(), null));
+
+        mockMvc.perform(get("/api/users").param("cursor", "abc").param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items.length()").value(0))
+                .andExpect(jsonPath("$.next").doesNotExist());
+    }
+
+    @Test
+    void searchUsersBindsQueryParameters() throws Exception {
+        Mockito.when(userService.searchUsers(Mockito.any(UserSearchDto.class)))
+                .thenReturn(new UserPageDto(List.of(createTestUserDto()), "next-cursor"));
+
+        mockMvc.perform(get("/api/users/search")
+                        .param("name", "test")
+                        .param("nameMatch", "PREFIX")
+                        .param("ageFrom", "18")
+                        .param("ageTo", "30")
+                        .param("createdFrom", "2024-01-01T00:00:00")
+                        .param("sort", "AGE")
+                        .param("direction", "DESC")
+                        .param("limit", "10"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(1))
+                .andExpect(jsonPath("$.next").value("next-cursor"));
+
+        Mockito.verify(userService).searchUsers(Mockito.argThat(criteria ->
+                criteria.getName().equals("test")
+                        && criteria.getNameMatch() == UserSearchDto.NameMatch.PREFIX
+                        && criteria.getAgeFrom() == 18
+                        && criteria.getAgeTo() == 30
+                        && criteria.getCreatedFrom().equals(LocalDateTime.of(2024, 1, 1, 0, 0))
+                        && criteria.getSort() == UserSearchDto.SortField.AGE
+                        && criteria.getDirection() == Sort.Direction.DESC
+                        && criteria.getLimit() == 10));
+    }
+
+    @Test
+    void getStats() throws Exception {
+        Mockito.when(userService.getStats()).thenReturn(new UserStatsDto(3,
+                Map.of("20-29", 3L), Map.of(LocalDate.of(2024, 1, 1), 3L), null));
+
+        mockMvc.perform(get("/api/users/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total").value(3))
+                .andExpect(jsonPath("$.ageHistogram['20-29']").value(3))
+                .andExpect(jsonPath("$.signupsPerDay['2024-01-01']").value(3));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void exportUsersAsNdjson() throws Exception {
+        UserDto user1 = createTestUserDto();
+        UserDto user2 = createTestUserDto();
+        user2.setId(2);
+
+        Mockito.doAnswer(invocation -> {
+            Consumer<UserDto> sink = invocation.getArgument(0);
+            sink.accept(user1);
+            sink.accept(user2);
+            return 2L;
+        }).when(userService).exportUsers(Mockito.any(Consumer.class));
+
+        MvcResult result = mockMvc.perform(get("/api/users/export"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        String[] lines = body.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(1, objectMapper.readValue(lines[0], UserDto.class).getId());
+        assertEquals(2, objectMapper.readValue(lines[1], UserDto.class).getId());
     }
 
     @Test
@@ -104,15 +550,94 @@ class UserControllerTest {
         UserDto updatedDto = createTestUserDto();
         updatedDto.setName("Updated Name");
 
-        Mockito.when(userService.updateUser(1, updateDto)).thenReturn(updatedDto);
+        Mockito.when(userService.updateUser(1, updateDto, null)).thenReturn(updatedDto);
 
         mockMvc.perform(put("/api/users/1")
                         .contentType(MediaType.APPLICATION_JSON)
                         .content(objectMapper.writeValueAsString(updateDto)))
                 .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3\""))
                 .andExpect(jsonPath("$.name").value("Updated Name"));
     }
 
+    @Test
+    void updateUserPassesIfMatchVersion() throws Exception {
+        UserCreateDto updateDto = createTestUserCreateDto();
+        Mockito.when(userService.updateUser(1, updateDto, 2))
+                .thenThrow(new PreconditionFailedException("Версия пользователя 1 изменилась"));
+
+        mockMvc.perform(put("/api/users/1")
+                        .header(HttpHeaders.IF_MATCH, "\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updateDto)))
+                .andExpect(status().isPreconditionFailed())
+                .andExpect(jsonPath("$.status").value(412))
+                .andExpect(jsonPath("$.code").value("VERSION_MISMATCH"));
+    }
+
+    @Test
+    void updateUserAcceptsIfMatchOfBinaryRepresentation() throws Exception {
+        UserCreateDto updateDto = createTestUserCreateDto();
+        Mockito.when(userService.updateUser(1, updateDto, 2)).thenReturn(createTestUserDto());
+
+        mockMvc.perform(put("/api/users/1")
+                        .header(HttpHeaders.IF_MATCH, "\"2-cbor\"")
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(updateDto)))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"3-cbor\""));
+    }
+
+    @Test
+    void updateUserRejectsWeakIfMatch() throws Exception {
+        mockMvc.perform(put("/api/users/1")
+                        .header(HttpHeaders.IF_MATCH, "W/\"2\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(createTestUserCreateDto())))
+                .andExpect(status().isPreconditionFailed());
+
+        Mockito.verifyNoInteractions(userService);
+    }
+
+    @Test
+    void patchUser() throws Exception {
+        UserDto patchedDto = createTestUserDto();
+        patchedDto.setAge(40);
+        patchedDto.setVersion(4);
+        Mockito.when(userService.patchUser(Mockito.eq(1), Mockito.any(UserPatchDto.class), Mockito.eq(3)))
+                .thenReturn(patchedDto);
+
+        mockMvc.perform(patch("/api/users/1")
+                        .header(HttpHeaders.IF_MATCH, "\"3\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"age\": 40}"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"4\""))
+                .andExpect(jsonPath("$.age").value(40));
+    }
+
+    @Test
+    void patchUserInvalidEmail() throws Exception {
+        mockMvc.perform(patch("/api/users/1")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"email\": \"not-an-email\"}"))
+                .andExpect(status().isBadRequest());
+
+        Mockito.verifyNoInteractions(userService);
+    }
+
+    @Test
+    void patchUserNotFound() throws Exception {
+        Mockito.when(userService.patchUser(Mockito.eq(404), Mockito.any(UserPatchDto.class), Mockito.isNull()))
+                .thenThrow(new NotFoundException("Пользователь не найден: 404"));
+
+        mockMvc.perform(patch("/api/users/404")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"name\": \"New\"}"))
+                .andExpect(status().isNotFound());
+    }
+
     @Test
     void deleteUser() throws Exception {
         mockMvc.perform(delete("/api/users/1"))
@@ -121,5 +646,84 @@ class UserControllerTest {
         Mockito.verify(userService, Mockito.times(1)).deleteUser(1);
     }
 
+    @Test
+    void deleteUsersInBulk() throws Exception {
+        Mockito.when(userService.deleteUsers(Mockito.any(UserBulkDeleteDto.class)))
+                .thenReturn(new UserBulkDeleteResultDto(3, 1));
+
+        mockMvc.perform(delete("/api/users")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\": [1, 2, 3]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted").value(3))
+                .andExpect(jsonPath("$.statements").value(1));
+    }
+
+    @Test
+    void streamChangesSendsBatchesWithResumableIds() throws Exception {
+        UserChangeDto change = new UserChangeDto("42:8", UserChangeDto.Type.UPDATED, createTestUserDto(),
+                LocalDateTime.of(2024, 1, 1, 10, 0));
+        Mockito.when(changeFeed.startOffset("41:7")).thenReturn("41:7");
+        Mockito.when(changeFeed.poll("41:7")).thenReturn(List.of(change));
+        Mockito.when(changeFeed.poll("42:8")).thenReturn(List.of());
+        Mockito.when(changeFeed.getBatchSize()).thenReturn(500);
+
+        MvcResult result = mockMvc.perform(get("/api/users/changes")
+                        .param("since", "40:1")
+                        .header("Last-Event-ID", "41:7"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
 
+        String body = "";
+        for (int i = 0; i < 100 && !body.contains("id:42:8"); i++) {
+            Thread.sleep(50);
+            body = result.getResponse().getContentAsString();
+        }
+        assertEquals(MediaType.TEXT_EVENT_STREAM_VALUE, result.getResponse().getContentType());
+        String[] lines = body.split("\n");
+        assertEquals("event:changes", lines[0]);
+        assertEquals("id:42:8", lines[1]);
+        JsonNode events = objectMapper.readTree(lines[2].substring("data:".length()));
+        assertEquals("UPDATED", events.get(0).get("type").asText());
+        assertEquals("42:8", events.get(0).get("offset").asText());
+        assertEquals(1, events.get(0).get("user").get("id").asInt());
+        Mockito.verify(changeFeed, Mockito.never()).poll("40:1");
+    }
+
+    @Test
+    void streamChangesRejectsMalformedOffset() throws Exception {
+        Mockito.when(changeFeed.startOffset("x"))
+                .thenThrow(new ValidationException("Некорректное смещение ленты изменений: x"));
+
+        mockMvc.perform(get("/api/users/changes").param("since", "x"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void streamChangesRejectsPrunedOffsetWithGone() throws Exception {
+        Mockito.when(changeFeed.startOffset("3:1"))
+                .thenThrow(new GoneException(ErrorCode.CHANGES_EXPIRED, "События после смещения 3:1 уже удалены"));
+
+        mockMvc.perform(get("/api/users/changes").param("since", "3:1"))
+                .andExpect(status().isGone())
+                .andExpect(jsonPath("$.code").value("CHANGES_EXPIRED"));
+    }
+
+    @Test
+    void streamChangesSendsResetWhenSubscriptionFallsBehindRetention() throws Exception {
+        Mockito.when(changeFeed.startOffset("3:1")).thenReturn("3:1");
+        Mockito.when(changeFeed.poll("3:1"))
+                .thenThrow(new GoneException(ErrorCode.CHANGES_EXPIRED, "События после смещения 3:1 уже удалены"));
+
+        MvcResult result = mockMvc.perform(get("/api/users/changes").param("since", "3:1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String body = "";
+        for (int i = 0; i < 100 && !body.contains("event:reset"); i++) {
+            Thread.sleep(50);
+            body = result.getResponse().getContentAsString(StandardCharsets.UTF_8);
+        }
+        assertTrue(body.startsWith("event:reset\ndata:События после смещения 3:1"), body);
+    }
 }
\ No newline at end of file
@@ -0,0 +1,197 @@
+package com.example.datasource;
+
+import jakarta.servlet.http.Cookie;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.method.HandlerMethod;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReplicaDataSourceTest {
+    private ReplicaDataSource replicaDataSource;
+    private SwitchableDataSource replica2;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+
+    @BeforeEach
+    void setUp() {
+        DataSource primary = node("primary");
+        DataSource replica1 = node("replica-1");
+        replica2 = new SwitchableDataSource(node("replica-2"));
+        replicaDataSource = new ReplicaDataSource(primary, List.of(replica1, replica2), 1);
+
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(primary);
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        PrimaryReadPinning.unpin();
+    }
+
+    private static DataSource node(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1");
+        new JdbcTemplate(dataSource).execute("CREATE TABLE IF NOT EXISTS node AS SELECT '" + name + "' AS name");
+        return dataSource;
+    }
+
+    private String readOnlyNode() {
+        return readOnly.execute(status -> currentNode());
+    }
+
+    private String currentNode() {
+        return jdbcTemplate.queryForObject("SELECT name FROM node", String.class);
+    }
+
+    @Test
+    void readOnlyTransactionsAlternateBetweenReplicasAndWritesStayOnPrimary() {
+        assertEquals(List.of("replica-1", "replica-2", "replica-1"),
+                List.of(readOnlyNode(), readOnlyNode(), readOnlyNode()));
+        assertEquals("primary", readWrite.execute(status -> currentNode()));
+    }
+
+    @Test
+    void connectionWithCredentialsIsTakenFromSelectedNode() throws SQLException {
+        try (Connection connection = replicaDataSource.getConnection("", "")) {
+            assertEquals("replica-1", new JdbcTemplate(new SingleConnectionDataSource(connection, true))
+                    .queryForObject("SELECT name FROM node", String.class));
+        }
+        PrimaryReadPinning.pin();
+        try (Connection connection = replicaDataSource.getConnection("", "")) {
+            assertEquals("primary", new JdbcTemplate(new SingleConnectionDataSource(connection, true))
+                    .queryForObject("SELECT name FROM node", String.class));
+        }
+    }
+
+    @Test
+    void pinnedReadsGoToPrimary() {
+        PrimaryReadPinning.pin();
+
+        assertEquals("primary", readOnlyNode());
+    }
+
+    @Test
+    void failedReplicaLeavesRotationUntilHealthCheckPasses() {
+        replica2.down = true;
+        assertEquals(List.of("replica-1", "replica-1", "replica-1"),
+                List.of(readOnlyNode(), readOnlyNode(), readOnlyNode()));
+        assertEquals(1, replicaDataSource.getHealthyCount());
+
+        replica2.down = false;
+        assertEquals("replica-1", readOnlyNode());
+        replicaDataSource.checkHealth();
+        assertEquals(2, replicaDataSource.getHealthyCount());
+        assertNotEquals(readOnlyNode(), readOnlyNode());
+    }
+
+    @Test
+    void readsFallBackToPrimaryWhenNoReplicaIsHealthy() {
+        replica2.down = true;
+        replicaDataSource = new ReplicaDataSource(node("primary"), List.of(replica2), 1);
+        replicaDataSource.checkHealth();
+
+        assertEquals(0, replicaDataSource.getHealthyCount());
+        LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(node("primary"));
+        dataSource.setReadOnlyDataSource(replicaDataSource);
+        TransactionTemplate transaction = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        transaction.setReadOnly(true);
+        assertEquals("primary", transaction.execute(status ->
+                new JdbcTemplate(dataSource).queryForObject("SELECT name FROM node", String.class)));
+    }
+
+    @Test
+    void clientIsPinnedToPrimaryForWindowAfterWrite() {
+        PrimaryReadPinning pinning = new PrimaryReadPinning(Duration.ofMinutes(1));
+
+        MockHttpServletRequest write = new MockHttpServletRequest("POST", "/api/users");
+        MockHttpServletResponse written = new MockHttpServletResponse();
+        pinning.preHandle(write, written, null);
+        assertTrue(PrimaryReadPinning.isPinned());
+        pinning.afterCompletion(write, written, null, null);
+        assertFalse(PrimaryReadPinning.isPinned());
+        Cookie pin = written.getCookie(PrimaryReadPinning.PIN_COOKIE);
+        assertNotNull(pin);
+        assertEquals(60, pin.getMaxAge());
+
+        pinning.preHandle(read(), new MockHttpServletResponse(), null);
+        assertFalse(PrimaryReadPinning.isPinned());
+        // Окно приходит с клиентом: его видит и другой экземпляр сервиса
+        new PrimaryReadPinning(Duration.ofMinutes(1)).preHandle(read(pin), new MockHttpServletResponse(), null);
+        assertTrue(PrimaryReadPinning.isPinned());
+    }
+
+    @Test
+    void expiredPinCookieIsIgnored() {
+        PrimaryReadPinning pinning = new PrimaryReadPinning(Duration.ofMinutes(1));
+
+        Cookie expired = new Cookie(PrimaryReadPinning.PIN_COOKIE, Long.toString(System.currentTimeMillis() - 1));
+        pinning.preHandle(read(expired), new MockHttpServletResponse(), null);
+        assertFalse(PrimaryReadPinning.isPinned());
+        pinning.preHandle(read(new Cookie(PrimaryReadPinning.PIN_COOKIE, "garbage")), new MockHttpServletResponse(), null);
+        assertFalse(PrimaryReadPinning.isPinned());
+    }
+
+    @Test
+    void readOnlyPostIsNotPinnedAndDoesNotPinClient() throws Exception {
+        PrimaryReadPinning pinning = new PrimaryReadPinning(Duration.ofMinutes(1));
+        HandlerMethod lookup = new HandlerMethod(new LookupHandler(), LookupHandler.class.getMethod("lookup"));
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        pinning.preHandle(new MockHttpServletRequest("POST", "/api/users/lookup"), response, lookup);
+        assertFalse(PrimaryReadPinning.isPinned());
+        assertNull(response.getCookie(PrimaryReadPinning.PIN_COOKIE));
+    }
+
+    static class LookupHandler {
+        @ReadOnlyEndpoint
+        public void lookup() {
+        }
+    }
+
+    private static MockHttpServletRequest read(Cookie... cookies) {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users");
+        if (cookies.length > 0) {
+            request.setCookies(cookies);
+        }
+        return request;
+    }
+
+    private static final class SwitchableDataSource extends DelegatingDataSource {
+        private volatile boolean down;
+
+        private SwitchableDataSource(DataSource target) {
+            super(target);
+        }
+
+        @Override
+        public Connection getConnection() throws SQLException {
+            if (down) {
+                throw new SQLException("Connection refused");
+            }
+            return super.getConnection();
+        }
+    }
+}
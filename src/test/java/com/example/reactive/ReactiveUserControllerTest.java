@@ -0,0 +1,204 @@
+package com.example.reactive;
+
+import com.example.dto.UserCreateDto;
+import com.example.dto.UserDto;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+@ActiveProfiles("reactive")
+@TestPropertySource(properties = {
+        "spring.r2dbc.url=r2dbc:h2:mem:///reactive;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.r2dbc.username=sa",
+        "spring.r2dbc.password=",
+        "spring.sql.init.mode=always",
+        "spring.sql.init.schema-locations=classpath:reactive/schema.sql",
+        "spring.flyway.enabled=false",
+        "app.users.email-index.enabled=false"
+})
+class ReactiveUserControllerTest {
+
+    @Autowired
+    private WebTestClient webTestClient;
+
+    @Autowired
+    private ReactiveUserRepository userRepository;
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @BeforeEach
+    void setUp() {
+        userRepository.deleteAll().block();
+        databaseClient.sql("DELETE FROM user_changes").then().block();
+    }
+
+    private UserCreateDto createDto(String name, String email, int age) {
+        UserCreateDto dto = new UserCreateDto();
+        dto.setName(name);
+        dto.setEmail(email);
+        dto.setAge(age);
+        return dto;
+    }
+
+    private UserDto create(String name, String email, int age) {
+        return webTestClient.post().uri("/api/users")
+                .bodyValue(createDto(name, email, age))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectBody(UserDto.class)
+                .returnResult().getResponseBody();
+    }
+
+    @Test
+    void createAndGetUser() {
+        UserDto created = create("Alice", "alice@example.com", 30);
+        assertNotNull(created.getId());
+        assertNotNull(created.getCreatedAt());
+
+        webTestClient.get().uri("/api/users/{id}", created.getId())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.email").isEqualTo("alice@example.com");
+    }
+
+    @Test
+    void createAndGetUserAsCbor() throws Exception {
+        ObjectMapper cborMapper = Jackson2ObjectMapperBuilder.cbor().build();
+
+        byte[] created = webTestClient.post().uri("/api/users")
+                .contentType(MediaType.APPLICATION_CBOR)
+                .accept(MediaType.APPLICATION_CBOR)
+                .bodyValue(cborMapper.writeValueAsBytes(createDto("Alice", "alice@example.com", 30)))
+                .exchange()
+                .expectStatus().isCreated()
+                .expectHeader().contentType(MediaType.APPLICATION_CBOR)
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+        int id = cborMapper.readTree(created).get("id").asInt();
+
+        byte[] fetched = webTestClient.get().uri("/api/users/{id}", id)
+                .accept(MediaType.APPLICATION_CBOR)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(byte[].class)
+                .returnResult().getResponseBody();
+        assertEquals("alice@example.com", cborMapper.readTree(fetched).get("email").asText());
+    }
+
+    @Test
+    void createUser_DuplicateEmail_Returns409() {
+        create("Alice", "alice@example.com", 30);
+
+        webTestClient.post().uri("/api/users")
+                .bodyValue(createDto("Other", "alice@example.com", 40))
+                .exchange()
+                .expectStatus().isEqualTo(409);
+    }
+
+    @Test
+    void createUser_InvalidBody_Returns400() {
+        webTestClient.post().uri("/api/users")
+                .bodyValue(createDto("", "not-an-email", 30))
+                .exchange()
+                .expectStatus().isBadRequest()
+                .expectBody()
+                .jsonPath("$.path").isEqualTo("/api/users");
+    }
+
+    @Test
+    void updateUser_DuplicateEmail_ReturnsEmailTaken() {
+        create("Alice", "alice@example.com", 30);
+        UserDto bob = create("Bob", "bob@example.com", 25);
+
+        webTestClient.put().uri("/api/users/{id}", bob.getId())
+                .bodyValue(createDto("Bob", "alice@example.com", 25))
+                .exchange()
+                .expectStatus().isEqualTo(409)
+                .expectBody()
+                .jsonPath("$.code").isEqualTo("EMAIL_TAKEN");
+    }
+
+    @Test
+    void updateUser_InvalidBody_Returns400() {
+        UserDto created = create("Alice", "alice@example.com", 30);
+
+        webTestClient.put().uri("/api/users/{id}", created.getId())
+                .bodyValue(createDto("", "not-an-email", 30))
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
+    @Test
+    void getUser_NotFound_Returns404() {
+        webTestClient.get().uri("/api/users/{id}", 999_999)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody()
+                .jsonPath("$.path").isEqualTo("/api/users/999999");
+    }
+
+    @Test
+    void exportStreamsNdjsonOrderedById() {
+        UserDto first = create("Alice", "alice@example.com", 30);
+        UserDto second = create("Bob", "bob@example.com", 25);
+
+        List<UserDto> exported = webTestClient.get().uri("/api/users/export")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .returnResult(UserDto.class)
+                .getResponseBody()
+                .collectList()
+                .block();
+
+        assertNotNull(exported);
+        assertEquals(List.of(first.getId(), second.getId()),
+                exported.stream().map(UserDto::getId).toList());
+    }
+
+    @Test
+    void updateAndDeleteUser() {
+        UserDto created = create("Alice", "alice@example.com", 30);
+
+        webTestClient.put().uri("/api/users/{id}", created.getId())
+                .bodyValue(createDto("Alice B", "alice.b@example.com", 31))
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.name").isEqualTo("Alice B");
+
+        webTestClient.delete().uri("/api/users/{id}", created.getId())
+                .exchange()
+                .expectStatus().isNoContent();
+
+        webTestClient.get().uri("/api/users/{id}", created.getId())
+                .exchange()
+                .expectStatus().isNotFound();
+
+        List<String> changes = databaseClient
+                .sql("SELECT type || ':' || version FROM user_changes WHERE user_id = :id ORDER BY id")
+                .bind("id", created.getId())
+                .map(row -> row.get(0, String.class))
+                .all()
+                .collectList()
+                .block();
+        assertEquals(List.of("CREATED:0", "UPDATED:1", "DELETED:1"), changes);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.repository;
+
+import com.example.entity.User;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Миграции поверх базы, которую раньше вела ddl-auto=update: строки уже есть до Flyway.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Testcontainers
+class LegacySchemaMigrationIT {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("users")
+            .withUsername("postgres")
+            .withPassword("password")
+            .withInitScript("legacy/users-before-flyway.sql");
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void newIdsStartAfterExistingRows() {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            User user = new User();
+            user.setName("new " + i);
+            user.setEmail("new" + i + "@example.com");
+            user.setAge(25);
+            users.add(user);
+        }
+
+        List<User> saved = userRepository.saveAllAndFlush(users);
+
+        assertThat(saved).allSatisfy(user -> assertThat(user.getId()).isGreaterThan(120));
+        assertThat(userRepository.count()).isEqualTo(180);
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.repository;
+
+import com.example.dto.UserChangeDto;
+import com.example.dto.UserDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.jdbc.JdbcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@JdbcTest
+@Import(UserChangeRepository.class)
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Testcontainers
+class UserChangeRepositoryIT {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15-alpine")
+            .withDatabaseName("users")
+            .withUsername("postgres")
+            .withPassword("password");
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) {
+        registry.add("spring.datasource.url", postgres::getJdbcUrl);
+        registry.add("spring.datasource.username", postgres::getUsername);
+        registry.add("spring.datasource.password", postgres::getPassword);
+    }
+
+    @Autowired
+    private UserChangeRepository changeRepository;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void cleanDatabase() {
+        jdbcTemplate.update("DELETE FROM user_changes");
+        jdbcTemplate.update("UPDATE user_changes_pruned SET txid = '0', change_id = 0");
+    }
+
+    @Test
+    void changeCommittedLateWithLowerIdIsNotSkipped() throws SQLException {
+        try (Connection first = dataSource.getConnection(); Connection second = dataSource.getConnection()) {
+            first.setAutoCommit(false);
+            second.setAutoCommit(false);
+            long firstId = insertChange(first, 1);
+            long secondId = insertChange(second, 2);
+            assertThat(firstId).isLessThan(secondId);
+
+            second.commit();
+            // Первая транзакция ещё идёт: отдав вторую, читатель перешагнул бы firstId навсегда
+            assertThat(changeRepository.findAfter(0, 0, 10)).isEmpty();
+
+            first.commit();
+        }
+
+        List<UserChange> changes = changeRepository.findAfter(0, 0, 10);
+        assertThat(changes).extracting(change -> change.getUser().getId()).containsExactly(1, 2);
+        UserChange last = changes.get(1);
+        assertThat(changeRepository.findAfter(last.getTxid(), last.getId(), 10)).isEmpty();
+    }
+
+    @Test
+    void resumesAfterPositionInCommitOrder() {
+        LocalDateTime now = LocalDateTime.now();
+        changeRepository.insertAll(UserChangeDto.Type.CREATED, List.of(
+                new UserDto(1, "First", "first@example.com", 30, now, 0),
+                new UserDto(2, "Second", "second@example.com", 31, now, 0)), now);
+
+        List<UserChange> changes = changeRepository.findAfter(0, 0, 10);
+        assertThat(changes).extracting(change -> change.getUser().getId()).containsExactly(1, 2);
+        assertThat(changeRepository.findAfter(changes.get(0).getTxid(), changes.get(0).getId(), 10))
+                .extracting(change -> change.getUser().getId()).containsExactly(2);
+    }
+
+    @Test
+    void pruneRecordsPositionOfLastDeletedChange() {
+        LocalDateTime now = LocalDateTime.now();
+        changeRepository.insertAll(UserChangeDto.Type.CREATED,
+                List.of(new UserDto(1, "Old", "old@example.com", 30, now, 0)), now.minusDays(10));
+        changeRepository.insertAll(UserChangeDto.Type.CREATED,
+                List.of(new UserDto(2, "New", "new@example.com", 31, now, 0)), now);
+        UserChange old = changeRepository.findAfter(0, 0, 10).get(0);
+        assertThat(changeRepository.findPrunedPosition()).containsExactly(0, 0);
+
+        assertThat(changeRepository.deleteChangedBefore(now.minusDays(7), 100)).isEqualTo(1);
+
+        assertThat(changeRepository.findPrunedPosition()).containsExactly(old.getTxid(), old.getId());
+        assertThat(changeRepository.findAfter(0, 0, 10)).extracting(change -> change.getUser().getId())
+                .containsExactly(2);
+    }
+
+    private static long insertChange(Connection connection, int userId) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO user_changes"
+                + " (type, user_id, name, email, age, created_at, version, changed_at)"
+                + " VALUES ('UPDATED', ?, 'User', ?, 30, now(), 1, now()) RETURNING id")) {
+            statement.setInt(1, userId);
+            statement.setString(2, "user" + userId + "@example.com");
+            try (ResultSet rs = statement.executeQuery()) {
+                rs.next();
+                return rs.getLong(1);
+            }
+        }
+    }
+}
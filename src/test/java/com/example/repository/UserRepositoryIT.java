@@ -1,11 +1,13 @@
 package com.example.repository;
 
+import com.example.dto.UserDto;
 import com.example.entity.User;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Limit;
 import org.springframework.test.context.DynamicPropertyRegistry;
 import org.springframework.test.context.DynamicPropertySource;
 import org.testcontainers.containers.PostgreSQLContainer;
@@ -15,6 +17,7 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 
@@ -131,6 +134,35 @@ class UserRepositoryIT {
         assertThat(updatedUser.get().getEmail()).isEqualTo("updated@example.com");
     }
 
+    @Test
+    void updateColumnsChangesOnlyGivenColumnsAndBumpsVersion() {
+        User user = new User();
+        user.setName("Original");
+        user.setEmail("columns@example.com");
+        user.setAge(40);
+        User savedUser = userRepository.saveAndFlush(user);
+
+        Optional<UpdatedUser> updated = userRepository.updateColumns(savedUser.getId(), null, null, 41, 0);
+
+        assertThat(updated).isPresent();
+        assertThat(updated.get().getPreviousAge()).isEqualTo(40);
+        assertThat(updated.get().getUser().getName()).isEqualTo("Original");
+        assertThat(updated.get().getUser().getAge()).isEqualTo(41);
+        assertThat(updated.get().getUser().getVersion()).isEqualTo(1);
+    }
+
+    @Test
+    void updateColumnsReturnsEmptyForStaleVersionOrMissingRow() {
+        User user = new User();
+        user.setName("Original");
+        user.setEmail("stale@example.com");
+        user.setAge(40);
+        User savedUser = userRepository.saveAndFlush(user);
+
+        assertThat(userRepository.updateColumns(savedUser.getId(), "New", null, null, 5)).isEmpty();
+        assertThat(userRepository.updateColumns(savedUser.getId() + 1000, "New", null, null, null)).isEmpty();
+    }
+
     @Test
     void deleteUser() {
         User user = new User();
@@ -144,6 +176,99 @@ class UserRepositoryIT {
         assertThat(userRepository.findById(savedUser.getId())).isEmpty();
     }
 
+    @Test
+    void bulkDeletes() {
+        for (int i = 0; i < 5; i++) {
+            User user = new User();
+            user.setName("Bulk" + i);
+            user.setEmail("bulk" + i + "@example.com");
+            user.setAge(20 + i);
+            userRepository.save(user);
+        }
+        userRepository.flush();
+        List<Integer> ids = userRepository.findAll().stream().map(User::getId).sorted().toList();
+
+        assertThat(userRepository.deleteUserById(ids.get(0))).map(UserDto::getName).contains("Bulk0");
+        assertThat(userRepository.deleteUserById(ids.get(0))).isEmpty();
+        assertThat(userRepository.deleteUsersByIds(List.of(ids.get(1), ids.get(1) + 1000))).hasSize(1);
+        LocalDateTime tomorrow = LocalDateTime.now().plusDays(1);
+        assertThat(userRepository.deleteUsersCreatedBefore(LocalDateTime.now().minusDays(1), 2)).isEmpty();
+        assertThat(userRepository.deleteUsersCreatedBefore(tomorrow, 2)).hasSize(2);
+        assertThat(userRepository.deleteUsersCreatedBefore(tomorrow, 2)).hasSize(1);
+        assertThat(userRepository.count()).isZero();
+    }
+
+    @Test
+    void findPagesOrderedByCreatedAtAndId() {
+        for (int i = 1; i <= 3; i++) {
+            User user = new User();
+            user.setName("User" + i);
+            user.setEmail("user" + i + "@example.com");
+            user.setAge(20 + i);
+            userRepository.save(user);
+        }
+
+        List<UserDto> firstPage = userRepository.findFirstPage(Limit.of(2));
+        assertThat(firstPage).extracting(UserDto::getName).containsExactly("User1", "User2");
+
+        UserDto last = firstPage.get(1);
+        List<UserDto> secondPage = userRepository.findPageAfter(last.getCreatedAt(), last.getId(), Limit.of(2));
+        assertThat(secondPage).extracting(UserDto::getName).containsExactly("User3");
+    }
+
+    @Test
+    void streamAllUsersOrderedById() {
+        User user1 = new User();
+        user1.setName("User1");
+        user1.setEmail("user1@example.com");
+        user1.setAge(20);
+
+        User user2 = new User();
+        user2.setName("User2");
+        user2.setEmail("user2@example.com");
+        user2.setAge(30);
+
+        userRepository.saveAll(List.of(user1, user2));
+
+        try (Stream<UserDto> users = userRepository.streamAllOrderById()) {
+            assertThat(users).extracting(UserDto::getName).containsExactly("User1", "User2");
+        }
+    }
+
+    @Test
+    void findDtoById() {
+        User user = new User();
+        user.setName("test");
+        user.setEmail("dto@example.com");
+        user.setAge(28);
+        User savedUser = userRepository.save(user);
+
+        Optional<UserDto> found = userRepository.findDtoById(savedUser.getId());
+
+        assertThat(found).isPresent();
+        assertThat(found.get().getEmail()).isEqualTo("dto@example.com");
+        assertThat(found.get().getCreatedAt()).isNotNull();
+        assertThat(userRepository.findDtoById(999)).isEmpty();
+    }
+
+    @Test
+    void findDtosByIds() {
+        User first = new User();
+        first.setName("first");
+        first.setEmail("first@example.com");
+        first.setAge(28);
+        User second = new User();
+        second.setName("second");
+        second.setEmail("second@example.com");
+        second.setAge(31);
+        List<User> saved = userRepository.saveAll(List.of(first, second));
+
+        List<UserDto> found = userRepository.findDtosByIds(List.of(saved.get(0).getId(), saved.get(1).getId(), 999));
+
+        assertThat(found).extracting(UserDto::getEmail)
+                .containsExactlyInAnyOrder("first@example.com", "second@example.com");
+    }
+
     @Test
     void returnEmptyIdNotFound() {
         Optional<User> found = userRepository.findById(999);
@@ -0,0 +1,36 @@
+package com.example.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class EmailBloomFilterTest {
+
+    @Test
+    void neverReportsAddedEmailAsAbsent() {
+        EmailBloomFilter filter = new EmailBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("user" + i + "@example.com");
+        }
+
+        for (int i = 0; i < 10_000; i++) {
+            assertTrue(filter.mightContain("user" + i + "@example.com"));
+        }
+    }
+
+    @Test
+    void keepsFalsePositiveRateNearConfiguredValue() {
+        EmailBloomFilter filter = new EmailBloomFilter(10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.put("user" + i + "@example.com");
+        }
+
+        int falsePositives = 0;
+        for (int i = 0; i < 100_000; i++) {
+            if (filter.mightContain("other" + i + "@example.com")) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < 2_000, "false positives: " + falsePositives);
+    }
+}
@@ -0,0 +1,53 @@
+package com.example.service;
+
+import com.example.datasource.UserShards;
+import com.example.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EmailIndexTest {
+
+    @Test
+    void reportsMaybeUntilBackgroundRebuildCompletes() throws Exception {
+        UserRepository userRepository = mock(UserRepository.class);
+        CountDownLatch scanStarted = new CountDownLatch(1);
+        CountDownLatch scanReleased = new CountDownLatch(1);
+        when(userRepository.count()).thenReturn(1L);
+        when(userRepository.streamAllEmails()).thenAnswer(invocation -> {
+            scanStarted.countDown();
+            scanReleased.await();
+            return Stream.of("alice@example.com");
+        });
+        EmailIndex index = new EmailIndex(userRepository, UserShards.single(),
+                mock(PlatformTransactionManager.class), true, 1_000, 0.01);
+
+        Thread rebuild = index.startRebuild();
+        scanStarted.await();
+        assertTrue(index.mightContain("bob@example.com"));
+
+        scanReleased.countDown();
+        rebuild.join();
+        assertTrue(index.mightContain("alice@example.com"));
+        assertFalse(index.mightContain("bob@example.com"));
+    }
+
+    @Test
+    void failedRebuildKeepsReportingMaybe() throws Exception {
+        UserRepository userRepository = mock(UserRepository.class);
+        when(userRepository.count()).thenThrow(new IllegalStateException("db down"));
+        EmailIndex index = new EmailIndex(userRepository, UserShards.single(),
+                mock(PlatformTransactionManager.class), true, 1_000, 0.01);
+
+        index.startRebuild().join();
+
+        assertTrue(index.mightContain("bob@example.com"));
+    }
+}
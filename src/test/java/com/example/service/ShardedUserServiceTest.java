@@ -0,0 +1,302 @@
+package com.example.service;
+
+import com.example.config.CacheConfig;
+import com.example.datasource.UserShards;
+import com.example.dto.UserBatchResultDto;
+import com.example.dto.UserCreateDto;
+import com.example.dto.UserDto;
+import com.example.dto.UserLookupResultDto;
+import com.example.dto.UserPageDto;
+import com.example.dto.UserSearchDto;
+import com.example.exception.ConflictException;
+import com.example.exception.ErrorCode;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.CacheManager;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "app.sharding.urls=" + ShardedUserServiceTest.SHARD_URLS,
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.flyway.enabled=false",
+        "spring.jpa.show-sql=false"
+})
+class ShardedUserServiceTest {
+    static final String SHARD_URL = "jdbc:h2:mem:shard%d;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    static final String SHARD_URLS = "jdbc:h2:mem:shard0;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1,"
+            + "jdbc:h2:mem:shard1;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1,"
+            + "jdbc:h2:mem:shard2;MODE=PostgreSQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1";
+    private static final int SHARDS = 3;
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    private static final List<JdbcTemplate> SHARD_JDBC = new ArrayList<>();
+
+    static {
+        // Схема из тех же миграций; V2 (триграммный индекс) и V5 (txid) только для PostgreSQL
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(
+                new ClassPathResource("db/migration/V1__create_users.sql"),
+                new ClassPathResource("db/migration/V3__user_emails.sql"),
+                new ClassPathResource("db/migration/V4__user_changes.sql"));
+        for (int i = 0; i < SHARDS; i++) {
+            JdbcDataSource dataSource = new JdbcDataSource();
+            dataSource.setURL(SHARD_URL.formatted(i));
+            dataSource.setUser("sa");
+            schema.execute(dataSource);
+            SHARD_JDBC.add(new JdbcTemplate(dataSource));
+        }
+    }
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserShards shards;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private UserStatistics statistics;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @BeforeEach
+    void clearShards() {
+        for (JdbcTemplate jdbc : SHARD_JDBC) {
+            jdbc.update("DELETE FROM users");
+            jdbc.update("DELETE FROM user_emails");
+            jdbc.update("DELETE FROM user_changes");
+        }
+        cacheManager.getCache(CacheConfig.USERS_CACHE).clear();
+    }
+
+    private static UserCreateDto user(int n) {
+        UserCreateDto dto = new UserCreateDto();
+        dto.setName("User " + n);
+        dto.setEmail("user" + n + "@example.com");
+        dto.setAge(20 + n % 50);
+        dto.setCreatedAt(START.plusMinutes(n % 7));
+        return dto;
+    }
+
+    private List<UserDto> createUsers(int count) {
+        List<UserBatchResultDto> results = userService.createUsers(
+                IntStream.range(0, count).mapToObj(ShardedUserServiceTest::user).toList());
+        return results.stream().map(UserBatchResultDto::getUser).toList();
+    }
+
+    private long[] connectionsPerShard() {
+        long[] connections = new long[SHARDS];
+        for (int i = 0; i < SHARDS; i++) {
+            Timer usage = meterRegistry.find("hikaricp.connections.usage").tag("pool", "shard-" + i).timer();
+            connections[i] = usage == null ? 0 : usage.count();
+        }
+        return connections;
+    }
+
+    @Test
+    void usersAreSpreadByIdHash() {
+        List<UserDto> created = createUsers(60);
+
+        assertTrue(userService instanceof ShardedUserService);
+        assertEquals(60, created.stream().map(UserDto::getId).distinct().count());
+        for (int i = 0; i < SHARDS; i++) {
+            int shard = i;
+            List<Integer> stored = SHARD_JDBC.get(i).queryForList("SELECT id FROM users", Integer.class);
+            assertFalse(stored.isEmpty(), "шард " + i + " пуст");
+            assertTrue(stored.stream().allMatch(id -> shards.shardOf(id) == shard));
+            // Событие создания пишется на шард пользователя в той же транзакции
+            assertEquals(new HashSet<>(stored), new HashSet<>(SHARD_JDBC.get(i)
+                    .queryForList("SELECT user_id FROM user_changes WHERE type = 'CREATED'", Integer.class)));
+        }
+    }
+
+    @Test
+    void concurrentIdAllocationHandsOutUniqueIds() throws Exception {
+        ShardedUserService sharded = (ShardedUserService) userService;
+        int threads = 8;
+        int perThread = 4 * ShardedUserService.ID_BLOCK_SIZE;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<Integer>>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    List<Integer> ids = new ArrayList<>();
+                    for (int i = 0; i < perThread; i++) {
+                        ids.add(sharded.allocateId());
+                    }
+                    return ids;
+                }));
+            }
+            start.countDown();
+            Set<Integer> ids = new HashSet<>();
+            for (Future<List<Integer>> future : futures) {
+                ids.addAll(future.get(30, TimeUnit.SECONDS));
+            }
+            assertEquals(threads * perThread, ids.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void pointLookupTouchesExactlyOneShard() {
+        List<UserDto> created = createUsers(30);
+
+        for (UserDto user : created.subList(0, 10)) {
+            long[] before = connectionsPerShard();
+            assertEquals(user.getEmail(), userService.getUserById(user.getId()).getEmail());
+            long[] after = connectionsPerShard();
+
+            int owner = shards.shardOf(user.getId());
+            for (int i = 0; i < SHARDS; i++) {
+                assertEquals(i == owner ? 1 : 0, after[i] - before[i], "шард " + i + " для id " + user.getId());
+            }
+        }
+    }
+
+    @Test
+    void lookupByIdsCollectsShardsInRequestedOrder() {
+        List<Integer> ids = new ArrayList<>(createUsers(30).stream().map(UserDto::getId).toList());
+        Collections.reverse(ids);
+        ids.add(2, -1);
+
+        UserLookupResultDto result = userService.getUsersByIds(ids);
+
+        assertEquals(ids.stream().filter(id -> id > 0).toList(),
+                result.getItems().stream().map(UserDto::getId).toList());
+        assertEquals(List.of(-1), result.getMissing());
+    }
+
+    @Test
+    void emailIsUniqueAcrossShards() {
+        UserDto first = userService.createUser(user(1));
+
+        ConflictException conflict = assertThrows(ConflictException.class, () -> userService.createUser(user(1)));
+        assertEquals(ErrorCode.EMAIL_TAKEN, conflict.getCode());
+
+        List<UserBatchResultDto> batch = userService.createUsers(List.of(user(1), user(2), user(2)));
+        assertEquals(UserBatchResultDto.Status.CONFLICT, batch.get(0).getStatus());
+        assertEquals(UserBatchResultDto.Status.CREATED, batch.get(1).getStatus());
+        assertEquals(UserBatchResultDto.Status.CONFLICT, batch.get(2).getStatus());
+
+        int total = SHARD_JDBC.stream()
+                .mapToInt(jdbc -> jdbc.queryForObject("SELECT count(*) FROM users", Integer.class))
+                .sum();
+        assertEquals(2, total);
+        assertEquals(first.getId(), userService.getUserById(first.getId()).getId());
+    }
+
+    @Test
+    void getAllUsersMergesShardsInCursorOrder() {
+        List<UserDto> created = createUsers(40);
+        List<Integer> expected = created.stream()
+                .sorted(Comparator.comparing(UserDto::getCreatedAt).thenComparing(UserDto::getId))
+                .map(UserDto::getId)
+                .toList();
+
+        List<Integer> ids = new ArrayList<>();
+        String cursor = null;
+        do {
+            UserPageDto page = userService.getAllUsers(cursor, 7);
+            assertTrue(page.getItems().size() <= 7);
+            page.getItems().forEach(user -> ids.add(user.getId()));
+            cursor = page.getNext();
+        } while (cursor != null);
+
+        assertEquals(expected, ids);
+    }
+
+    @Test
+    void searchMergesShardsBySortKey() {
+        createUsers(40);
+        UserSearchDto criteria = new UserSearchDto();
+        criteria.setAgeFrom(30);
+        criteria.setSort(UserSearchDto.SortField.AGE);
+        criteria.setDirection(Sort.Direction.DESC);
+        criteria.setLimit(4);
+
+        List<UserDto> found = new ArrayList<>();
+        Set<Integer> ids = new HashSet<>();
+        do {
+            UserPageDto page = userService.searchUsers(criteria);
+            found.addAll(page.getItems());
+            page.getItems().forEach(user -> assertTrue(ids.add(user.getId())));
+            criteria.setCursor(page.getNext());
+        } while (criteria.getCursor() != null);
+
+        assertEquals(30, found.size());
+        assertEquals(found.stream()
+                        .sorted(Comparator.comparing(UserDto::getAge).thenComparing(UserDto::getId).reversed())
+                        .toList(),
+                found);
+    }
+
+    @Test
+    void searchByNameMergesShardsInCodePointOrder() {
+        List<String> names = List.of("alice", "Alice", "Bob", "bob", "Émile", "émile", "Zoë", "zoe",
+                "Ärger", "ärger", "Øystein", "Åsa", "Łukasz", "yuki", "Ümit", "Ömer");
+        userService.createUsers(IntStream.range(0, names.size()).mapToObj(n -> {
+            UserCreateDto dto = user(n);
+            dto.setName(names.get(n));
+            return dto;
+        }).toList());
+
+        for (Sort.Direction direction : Sort.Direction.values()) {
+            UserSearchDto criteria = new UserSearchDto();
+            criteria.setSort(UserSearchDto.SortField.NAME);
+            criteria.setDirection(direction);
+            criteria.setLimit(3);
+
+            List<String> found = new ArrayList<>();
+            do {
+                UserPageDto page = userService.searchUsers(criteria);
+                page.getItems().forEach(user -> found.add(user.getName()));
+                criteria.setCursor(page.getNext());
+            } while (criteria.getCursor() != null);
+
+            List<String> expected = new ArrayList<>(names);
+            expected.sort(direction.isAscending()
+                    ? ShardedUserService::compareCodePoints
+                    : (a, b) -> ShardedUserService.compareCodePoints(b, a));
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    void statisticsAreReconciledAcrossShards() {
+        createUsers(25);
+
+        statistics.reconcile();
+
+        assertEquals(25, statistics.snapshot().getTotal());
+    }
+}
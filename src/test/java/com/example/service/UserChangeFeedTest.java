@@ -0,0 +1,145 @@
+package com.example.service;
+
+import com.example.datasource.ShardRoutingDataSource;
+import com.example.datasource.UserShards;
+import com.example.dto.UserChangeDto;
+import com.example.dto.UserDto;
+import com.example.exception.GoneException;
+import com.example.exception.ValidationException;
+import com.example.repository.UserChange;
+import com.example.repository.UserChangeRepository;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class UserChangeFeedTest {
+    private static final LocalDateTime OLD = LocalDateTime.now().minusMinutes(5);
+
+    private final UserChangeRepository changeRepository = mock(UserChangeRepository.class);
+
+    @BeforeEach
+    void nothingPruned() {
+        when(changeRepository.findPrunedPosition()).thenReturn(new long[]{0, 0});
+    }
+
+    private UserChangeFeed feed(UserShards shards, int batchSize) {
+        return new UserChangeFeed(changeRepository, shards, batchSize, Duration.ofMillis(1), Duration.ofDays(7));
+    }
+
+    private static UserChange change(long txid, long id, int userId, LocalDateTime changedAt) {
+        return new UserChange(txid, id, UserChangeDto.Type.UPDATED,
+                new UserDto(userId, "User", "user" + userId + "@example.com", 30, OLD, 1), changedAt);
+    }
+
+    @Test
+    void pollResumesFromTransactionPosition() {
+        // Транзакция 41 взяла id 9 раньше, чем 40 взяла id 10, но закоммитилась позже
+        when(changeRepository.findAfter(40, 8, 100)).thenReturn(List.of(
+                change(40, 10, 1, OLD), change(41, 9, 2, OLD.plusSeconds(1))));
+
+        List<UserChangeDto> batch = feed(UserShards.single(), 100).poll("40:8");
+
+        assertEquals(List.of("40:10", "41:9"), batch.stream().map(UserChangeDto::getOffset).toList());
+        assertEquals(2, batch.get(1).getUser().getId());
+    }
+
+    @Test
+    void emptyOffsetStartsFromBeginning() {
+        when(changeRepository.findAfter(0, 0, 100)).thenReturn(List.of(change(5, 1, 1, OLD)));
+
+        assertEquals("5:1", feed(UserShards.single(), 100).poll(null).get(0).getOffset());
+    }
+
+    @Test
+    void rejectsMalformedOffsets() {
+        UserChangeFeed feed = feed(UserShards.single(), 100);
+
+        assertThrows(ValidationException.class, () -> feed.normalizeOffset("abc"));
+        assertThrows(ValidationException.class, () -> feed.normalizeOffset("7"));
+        assertThrows(ValidationException.class, () -> feed.normalizeOffset("1:-1"));
+        assertThrows(ValidationException.class, () -> feed.normalizeOffset("1:2:3"));
+        assertThrows(ValidationException.class, () -> feed.normalizeOffset("1:2.3:4"));
+        verifyNoInteractions(changeRepository);
+    }
+
+    @Test
+    void mergesShardsByChangeTimeKeepingPerShardOffsets() {
+        UserShards shards = twoShards();
+        Map<Integer, List<UserChange>> changes = Map.of(
+                0, List.of(change(50, 5, 10, OLD), change(60, 6, 10, OLD.plusSeconds(3))),
+                1, List.of(change(7, 2, 11, OLD.plusSeconds(2))));
+        when(changeRepository.findAfter(anyLong(), anyLong(), anyInt())).thenAnswer(invocation ->
+                changes.get(ShardRoutingDataSource.currentShard()));
+
+        List<UserChangeDto> batch = feed(shards, 100).poll("40:4.6:1");
+
+        assertEquals(List.of("50:5.6:1", "50:5.7:2", "60:6.7:2"),
+                batch.stream().map(UserChangeDto::getOffset).toList());
+        assertEquals(List.of(10, 11, 10), batch.stream().map(change -> change.getUser().getId()).toList());
+        assertThrows(ValidationException.class, () -> feed(shards, 100).normalizeOffset("40:4"));
+    }
+
+    @Test
+    void batchIsCappedAndResumesFromLastOffset() {
+        UserShards shards = twoShards();
+        Map<Integer, List<UserChange>> changes = Map.of(
+                0, List.of(change(3, 1, 10, OLD), change(4, 2, 10, OLD.plusSeconds(2))),
+                1, List.of(change(3, 1, 11, OLD.plusSeconds(1))));
+        when(changeRepository.findAfter(anyLong(), anyLong(), anyInt())).thenAnswer(invocation ->
+                changes.get(ShardRoutingDataSource.currentShard()));
+
+        List<UserChangeDto> batch = feed(shards, 2).poll("");
+
+        assertEquals(List.of("3:1.0:0", "3:1.3:1"), batch.stream().map(UserChangeDto::getOffset).toList());
+    }
+
+    @Test
+    void offsetBehindPrunedEventsIsGone() {
+        when(changeRepository.findPrunedPosition()).thenReturn(new long[]{40, 9});
+        when(changeRepository.findAfter(anyLong(), anyLong(), anyInt())).thenReturn(List.of(change(41, 12, 1, OLD)));
+        UserChangeFeed feed = feed(UserShards.single(), 100);
+
+        assertThrows(GoneException.class, () -> feed.startOffset("40:8"));
+        assertThrows(GoneException.class, () -> feed.poll("39:20"));
+        assertEquals("40:9", feed.startOffset("40:9"));
+        assertEquals("41:12", feed.poll("40:9").get(0).getOffset());
+        // Пустое смещение — начало того, что осталось
+        assertEquals("0:0", feed.startOffset(""));
+    }
+
+    @Test
+    void pruneDeletesInChunksUntilDone() {
+        when(changeRepository.deleteChangedBefore(any(), eq(UserChangeFeed.PRUNE_CHUNK_SIZE)))
+                .thenReturn(UserChangeFeed.PRUNE_CHUNK_SIZE, 10);
+
+        feed(UserShards.single(), 100).prune();
+
+        verify(changeRepository, times(2)).deleteChangedBefore(any(), eq(UserChangeFeed.PRUNE_CHUNK_SIZE));
+    }
+
+    private static UserShards twoShards() {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory();
+        beans.addBean("shardRoutingDataSource", new ShardRoutingDataSource(List.of(h2("feed0"), h2("feed1"))));
+        return new UserShards(beans.getBeanProvider(ShardRoutingDataSource.class),
+                beans.getBeanProvider(PlatformTransactionManager.class));
+    }
+
+    private static JdbcDataSource h2(String name) {
+        JdbcDataSource dataSource = new JdbcDataSource();
+        dataSource.setURL("jdbc:h2:mem:" + name);
+        return dataSource;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.service;
+
+import com.example.dto.UserBatchResultDto;
+import com.example.dto.UserCreateDto;
+import com.example.dto.UserDto;
+import com.example.dto.UserIngestStatusDto;
+import com.example.exception.NotFoundException;
+import com.example.exception.ServiceUnavailableException;
+import com.example.exception.TooManyRequestsException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.CannotCreateTransactionException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+class UserIngestQueueTest {
+    private final UserService userService = mock(UserService.class);
+
+    private UserIngestQueue queue(int capacity, int batchSize) {
+        return new UserIngestQueue(userService, new SimpleMeterRegistry(), true, capacity, batchSize,
+                Duration.ofMinutes(1), 3, Duration.ofMillis(1));
+    }
+
+    private static UserCreateDto user(int i) {
+        UserCreateDto dto = new UserCreateDto();
+        dto.setName("User " + i);
+        dto.setEmail("user" + i + "@example.com");
+        dto.setAge(20 + i);
+        return dto;
+    }
+
+    @Test
+    void rejectsAsUnavailableWhenNotStartedOrStopped() {
+        UserIngestQueue queue = queue(2, 10);
+        assertThrows(ServiceUnavailableException.class, () -> queue.submit(user(0)));
+
+        queue.start();
+        queue.stop();
+        assertThrows(ServiceUnavailableException.class, () -> queue.submit(user(0)));
+    }
+
+    @Test
+    void rejectsAsTooManyRequestsWhenFull() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userService.createUsers(anyList())).thenAnswer(invocation -> {
+            writing.countDown();
+            release.await();
+            return List.of(UserBatchResultDto.created(0, new UserDto()));
+        });
+        UserIngestQueue queue = queue(1, 1);
+        queue.start();
+
+        queue.submit(user(0));
+        writing.await();
+        queue.submit(user(1));
+        assertThrows(TooManyRequestsException.class, () -> queue.submit(user(2)));
+
+        release.countDown();
+        queue.stop();
+    }
+
+    @Test
+    void drainsInBatchesAndRecordsStatuses() {
+        List<Integer> batchSizes = new ArrayList<>();
+        when(userService.createUsers(anyList())).thenAnswer(invocation -> {
+            List<UserCreateDto> users = invocation.getArgument(0);
+            batchSizes.add(users.size());
+            List<UserBatchResultDto> results = new ArrayList<>();
+            for (int i = 0; i < users.size(); i++) {
+                results.add(users.get(i).getAge() == 21
+                        ? UserBatchResultDto.failed(i, UserBatchResultDto.Status.CONFLICT, "Email уже существует")
+                        : UserBatchResultDto.created(i, new UserDto()));
+            }
+            return results;
+        });
+        UserIngestQueue queue = queue(100, 2);
+        queue.start();
+
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add(queue.submit(user(i)).getId());
+        }
+        queue.stop();
+
+        assertEquals(5, batchSizes.stream().mapToInt(Integer::intValue).sum());
+        assertTrue(batchSizes.stream().allMatch(size -> size <= 2));
+        assertEquals(UserIngestStatusDto.State.CREATED, queue.getStatus(ids.get(0)).getState());
+        assertEquals(UserIngestStatusDto.State.CONFLICT, queue.getStatus(ids.get(1)).getState());
+        assertThrows(NotFoundException.class, () -> queue.getStatus("missing"));
+    }
+
+    @Test
+    void splitsBatchOnUniqueViolationSoOnlyConflictingRowFails() {
+        // Email заявки 2 успели занять в обход очереди: пакетный INSERT падает целиком
+        when(userService.createUsers(anyList())).thenAnswer(invocation -> {
+            List<UserCreateDto> users = invocation.getArgument(0);
+            if (users.stream().anyMatch(user -> user.getAge() == 22)) {
+                throw new DataIntegrityViolationException("duplicate key value violates unique constraint");
+            }
+            List<UserBatchResultDto> results = new ArrayList<>();
+            for (int i = 0; i < users.size(); i++) {
+                results.add(UserBatchResultDto.created(i, new UserDto()));
+            }
+            return results;
+        });
+        UserIngestQueue queue = queue(10, 10);
+
+        List<String> ids = new ArrayList<>();
+        List<UserIngestQueue.Submission> batch = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            ids.add("s" + i);
+            batch.add(new UserIngestQueue.Submission("s" + i, user(i)));
+        }
+        queue.write(batch);
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i == 2 ? UserIngestStatusDto.State.CONFLICT : UserIngestStatusDto.State.CREATED,
+                    queue.getStatus(ids.get(i)).getState(), "заявка " + i);
+        }
+    }
+
+    @Test
+    void retriesTransientFailuresWithinBound() {
+        when(userService.createUsers(anyList()))
+                .thenThrow(new CannotCreateTransactionException("Connection is not available"))
+                .thenReturn(List.of(UserBatchResultDto.created(0, new UserDto())));
+        UserIngestQueue queue = queue(10, 10);
+
+        queue.write(List.of(new UserIngestQueue.Submission("s0", user(0))));
+
+        assertEquals(UserIngestStatusDto.State.CREATED, queue.getStatus("s0").getState());
+        verify(userService, times(2)).createUsers(anyList());
+
+        reset(userService);
+        when(userService.createUsers(anyList()))
+                .thenThrow(new CannotCreateTransactionException("Connection is not available"));
+        queue.write(List.of(new UserIngestQueue.Submission("s1", user(1))));
+
+        assertEquals(UserIngestStatusDto.State.FAILED, queue.getStatus("s1").getState());
+        verify(userService, times(3)).createUsers(anyList());
+    }
+
+    @Test
+    void marksBatchFailedWhenWriteThrows() {
+        when(userService.createUsers(anyList())).thenThrow(new IllegalStateException("БД недоступна"));
+        UserIngestQueue queue = queue(10, 10);
+        queue.start();
+
+        String id = queue.submit(user(0)).getId();
+        queue.stop();
+
+        UserIngestStatusDto status = queue.getStatus(id);
+        assertEquals(UserIngestStatusDto.State.FAILED, status.getState());
+        assertEquals("БД недоступна", status.getError());
+    }
+}
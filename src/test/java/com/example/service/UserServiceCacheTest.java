@@ -0,0 +1,123 @@
+package com.example.service;
+
+import com.example.config.CacheConfig;
+import com.example.dto.UserCreateDto;
+import com.example.dto.UserDto;
+import com.example.entity.User;
+import com.example.repository.UpdatedUser;
+import com.example.repository.UserChangeRepository;
+import com.example.repository.UserRepository;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@SpringBootTest(classes = {UserService.class, CacheConfig.class, UserServiceCacheTest.Transactions.class}, properties = {
+        "spring.cache.type=caffeine",
+        "spring.cache.cache-names=users",
+        "spring.cache.caffeine.spec=maximumSize=100,expireAfterWrite=1m,recordStats"
+})
+@ImportAutoConfiguration(CacheAutoConfiguration.class)
+class UserServiceCacheTest {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private CacheManager cacheManager;
+
+    @MockBean
+    private UserRepository userRepository;
+
+    @MockBean
+    private Validator validator;
+
+    @MockBean
+    private EmailIndex emailIndex;
+
+    @MockBean
+    private UserStatistics statistics;
+
+    @MockBean
+    private UserChangeRepository changeRepository;
+
+    @Configuration
+    static class Transactions {
+        @Bean
+        TransactionOperations transactionOperations() {
+            return TransactionOperations.withoutTransaction();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        cacheManager.getCache(CacheConfig.USERS_CACHE).clear();
+
+        User user = new User();
+        user.setId(1);
+        user.setName("Test User");
+        user.setEmail("test@example.com");
+        user.setAge(25);
+        user.setCreatedAt(LocalDateTime.now());
+        when(userRepository.findById(1)).thenReturn(Optional.of(user));
+        when(userRepository.findDtoById(1)).thenReturn(Optional.of(userService.convertToDTO(user)));
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userRepository.updateColumns(eq(1), any(), any(), any(), any()))
+                .thenReturn(Optional.of(new UpdatedUser(userService.convertToDTO(user), 25)));
+        when(statistics.recorded(any())).thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+    }
+
+    @Test
+    void getUserByIdIsServedFromCache() {
+        userService.getUserById(1);
+        userService.getUserById(1);
+
+        verify(userRepository, times(1)).findDtoById(1);
+
+        CaffeineCache cache = (CaffeineCache) cacheManager.getCache(CacheConfig.USERS_CACHE);
+        assertEquals(1, cache.getNativeCache().stats().hitCount());
+        assertEquals(1, cache.getNativeCache().stats().missCount());
+    }
+
+    @Test
+    void updateUserEvictsCachedUser() {
+        userService.getUserById(1);
+
+        UserCreateDto updateDto = new UserCreateDto();
+        updateDto.setName("New Name");
+        updateDto.setEmail("new@example.com");
+        updateDto.setAge(30);
+        userService.updateUser(1, updateDto, null);
+
+        userService.getUserById(1);
+
+        verify(userRepository, times(2)).findDtoById(1);
+    }
+
+    @Test
+    void deleteUserEvictsCachedUser() {
+        userService.getUserById(1);
+        userService.deleteUser(1);
+        userService.getUserById(1);
+
+        verify(userRepository, times(2)).findDtoById(1);
+    }
+}
@@ -1,21 +1,55 @@
 package com.example.service;
 
+import com.example.dto.UserBatchResultDto;
+import com.example.dto.UserBulkDeleteDto;
+import com.example.dto.UserBulkDeleteResultDto;
+import com.example.dto.UserChangeDto;
 import com.example.dto.UserCreateDto;
 import com.example.dto.UserDto;
+import com.example.dto.UserLookupResultDto;
+import com.example.dto.UserPageDto;
+import com.example.dto.UserPatchDto;
+import com.example.dto.UserSearchDto;
 import com.example.entity.User;
+import com.example.exception.ConflictException;
+import com.example.exception.ErrorCode;
+import com.example.exception.NotFoundException;
+import com.example.exception.PreconditionFailedException;
+import com.example.exception.ValidationException;
+import com.example.repository.UpdatedUser;
+import com.example.repository.UserChangeRepository;
 import com.example.repository.UserRepository;
+import jakarta.validation.Validation;
+import jakarta.validation.Validator;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.transaction.support.TransactionOperations;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -24,9 +58,30 @@ class UserServiceTest {
     @Mock
     private UserRepository userRepository;
 
+    @Mock
+    private EmailIndex emailIndex;
+
+    @Mock
+    private UserStatistics statistics;
+
+    @Mock
+    private UserChangeRepository changeRepository;
+
+    @Spy
+    private TransactionOperations transactions = TransactionOperations.withoutTransaction();
+
+    @Spy
+    private Validator validator = Validation.buildDefaultValidatorFactory().getValidator();
+
     @InjectMocks
     private UserService userService;
 
+    @BeforeEach
+    void runRecordedWrites() {
+        lenient().when(statistics.recorded(any()))
+                .thenAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get());
+    }
+
     @Test
     void createUser() {
         UserCreateDto createDto = new UserCreateDto();
@@ -41,7 +96,7 @@ class UserServiceTest {
         savedUser.setAge(25);
         savedUser.setCreatedAt(LocalDateTime.now());
 
-        when(userRepository.save(any(User.class))).thenReturn(savedUser);
+        when(userRepository.saveAndFlush(any(User.class))).thenReturn(savedUser);
 
         UserDto result = userService.createUser(createDto);
 
@@ -51,94 +106,546 @@ class UserServiceTest {
         assertEquals("test@example.com", result.getEmail());
         assertEquals(25, result.getAge());
 
-        verify(userRepository, times(1)).save(any(User.class));
+        verify(userRepository, times(1)).saveAndFlush(any(User.class));
+        verify(changeRepository).insertAll(eq(UserChangeDto.Type.CREATED), argThat(users -> users.size() == 1), any());
+        verify(emailIndex).add("test@example.com");
+    }
+
+    @Test
+    void createUserSkipsExistsQueryWhenEmailIndexMisses() {
+        UserCreateDto createDto = new UserCreateDto();
+        createDto.setName("Test User");
+        createDto.setEmail("test@example.com");
+        createDto.setAge(25);
+
+        when(emailIndex.mightContain("test@example.com")).thenReturn(false);
+        when(userRepository.saveAndFlush(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        userService.createUser(createDto);
+
+        verify(userRepository, never()).existsByEmail(any());
+    }
+
+    @Test
+    void createUserChecksDatabaseWhenEmailIndexMayContain() {
+        UserCreateDto createDto = new UserCreateDto();
+        createDto.setName("Test User");
+        createDto.setEmail("test@example.com");
+        createDto.setAge(25);
+
+        when(emailIndex.mightContain("test@example.com")).thenReturn(true);
+        when(userRepository.existsByEmail("test@example.com")).thenReturn(true);
+
+        ConflictException ex = assertThrows(ConflictException.class, () -> userService.createUser(createDto));
+        assertEquals(ErrorCode.EMAIL_TAKEN, ex.getCode());
+        verify(userRepository, never()).saveAndFlush(any());
+    }
+
+    @Test
+    void createUserMapsUniqueViolationToConflict() {
+        UserCreateDto createDto = new UserCreateDto();
+        createDto.setName("Test User");
+        createDto.setEmail("test@example.com");
+        createDto.setAge(25);
+
+        when(emailIndex.mightContain("test@example.com")).thenReturn(false);
+        when(userRepository.saveAndFlush(any(User.class))).thenThrow(new DataIntegrityViolationException("users_email_key"));
+
+        assertThrows(ConflictException.class, () -> userService.createUser(createDto));
+        verify(emailIndex, never()).add(any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void createUsersReportsPerItemResults() {
+        UserCreateDto valid = new UserCreateDto();
+        valid.setName("New");
+        valid.setEmail("new@example.com");
+        valid.setAge(20);
+
+        UserCreateDto taken = new UserCreateDto();
+        taken.setName("Taken");
+        taken.setEmail("taken@example.com");
+        taken.setAge(30);
+
+        UserCreateDto duplicate = new UserCreateDto();
+        duplicate.setName("Duplicate");
+        duplicate.setEmail("new@example.com");
+        duplicate.setAge(40);
+
+        UserCreateDto invalid = new UserCreateDto();
+        invalid.setEmail("not-an-email");
+
+        when(userRepository.findExistingEmails(Set.of("new@example.com", "taken@example.com")))
+                .thenReturn(Set.of("taken@example.com"));
+        when(userRepository.saveAll(anyList())).thenAnswer(invocation -> {
+            List<User> users = invocation.getArgument(0);
+            users.forEach(user -> user.setId(100));
+            return users;
+        });
+
+        List<UserBatchResultDto> results = userService.createUsers(List.of(valid, taken, duplicate, invalid));
+
+        assertEquals(4, results.size());
+        assertEquals(UserBatchResultDto.Status.CREATED, results.get(0).getStatus());
+        assertEquals(100, results.get(0).getUser().getId());
+        assertEquals(UserBatchResultDto.Status.CONFLICT, results.get(1).getStatus());
+        assertEquals(UserBatchResultDto.Status.CONFLICT, results.get(2).getStatus());
+        assertEquals(UserBatchResultDto.Status.INVALID, results.get(3).getStatus());
+        assertEquals(3, results.get(3).getIndex());
+        assertTrue(results.get(3).getError().contains("email"));
+
+        verify(userRepository, times(1)).findExistingEmails(any());
+        verify(userRepository, never()).existsByEmail(any());
+        verify(userRepository, times(1)).saveAll(argThat(users -> ((List<User>) users).size() == 1));
+    }
+
+    @Test
+    void createUsersChecksEmailsMissingFromEmailIndex() {
+        UserCreateDto taken = new UserCreateDto();
+        taken.setName("Taken");
+        taken.setEmail("taken@example.com");
+        taken.setAge(30);
+
+        // Email создан на другом экземпляре и в локальный индекс не попал
+        lenient().when(emailIndex.mightContain(any())).thenReturn(false);
+        when(userRepository.findExistingEmails(Set.of("taken@example.com"))).thenReturn(Set.of("taken@example.com"));
+
+        List<UserBatchResultDto> results = userService.createUsers(List.of(taken));
+
+        assertEquals(UserBatchResultDto.Status.CONFLICT, results.get(0).getStatus());
+        verify(userRepository, never()).saveAll(argThat(users -> users.iterator().hasNext()));
+    }
+
+    @Test
+    void createUsersRejectsEmptyAndOversizedBatches() {
+        assertThrows(ValidationException.class, () -> userService.createUsers(List.of()));
+
+        UserCreateDto dto = new UserCreateDto();
+        List<UserCreateDto> oversized = new ArrayList<>();
+        for (int i = 0; i <= UserService.MAX_BATCH_SIZE; i++) {
+            oversized.add(dto);
+        }
+        assertThrows(ValidationException.class, () -> userService.createUsers(oversized));
+        verifyNoInteractions(userRepository);
     }
 
     @Test
     void getUserById() {
-        User user = new User();
-        user.setId(1);
-        user.setName("Test User");
-        user.setEmail("test@example.com");
-        user.setAge(25);
-        user.setCreatedAt(LocalDateTime.now());
+        UserDto user = new UserDto(1, "Test User", "test@example.com", 25, LocalDateTime.now(), 0);
 
-        when(userRepository.findById(1)).thenReturn(Optional.of(user));
+        when(userRepository.findDtoById(1)).thenReturn(Optional.of(user));
         UserDto result = userService.getUserById(1);
 
         assertNotNull(result);
         assertEquals(1, result.getId());
         assertEquals("Test User", result.getName());
-        verify(userRepository, times(1)).findById(1);
+        verify(userRepository, times(1)).findDtoById(1);
+        verify(userRepository, never()).findById(any());
     }
 
     @Test
     void getUserByIdExceptionWhenNotFound() {
-        when(userRepository.findById(999)).thenReturn(Optional.empty());
+        when(userRepository.findDtoById(999)).thenReturn(Optional.empty());
         assertThrows(RuntimeException.class, () -> userService.getUserById(999));
-        verify(userRepository, times(1)).findById(999);
+        verify(userRepository, times(1)).findDtoById(999);
+    }
+
+    @Test
+    void concurrentLookupsOfSameUserShareOneQuery() throws Exception {
+        UserDto user = new UserDto(1, "Test User", "test@example.com", 25, LocalDateTime.now(), 0);
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.findDtoById(1)).thenAnswer(invocation -> {
+            release.await();
+            return Optional.of(user);
+        });
+
+        List<Object> results = callConcurrently(16, release, () -> userService.getUserById(1));
+
+        assertTrue(results.stream().allMatch(user::equals));
+        verify(userRepository, times(1)).findDtoById(1);
+
+        // Склейка живёт только пока запрос в полёте: следующий вызов идёт в БД
+        userService.getUserById(1);
+        verify(userRepository, times(2)).findDtoById(1);
+    }
+
+    @Test
+    void concurrentLookupsOfMissingUserShareNotFound() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        when(userRepository.findDtoById(999)).thenAnswer(invocation -> {
+            release.await();
+            return Optional.empty();
+        });
+
+        List<Object> results = callConcurrently(16, release, () -> userService.getUserById(999));
+
+        assertTrue(results.stream().allMatch(NotFoundException.class::isInstance));
+        verify(userRepository, times(1)).findDtoById(999);
+    }
+
+    @Test
+    void concurrentEmailChecksShareOneQuery() throws Exception {
+        UserCreateDto createDto = new UserCreateDto();
+        createDto.setName("Test User");
+        createDto.setEmail("test@example.com");
+        createDto.setAge(25);
+        CountDownLatch release = new CountDownLatch(1);
+        when(emailIndex.mightContain("test@example.com")).thenReturn(true);
+        when(userRepository.existsByEmail("test@example.com")).thenAnswer(invocation -> {
+            release.await();
+            return true;
+        });
+
+        List<Object> results = callConcurrently(16, release, () -> userService.createUser(createDto));
+
+        assertTrue(results.stream().allMatch(ConflictException.class::isInstance));
+        verify(userRepository, times(1)).existsByEmail("test@example.com");
+        verify(userRepository, never()).saveAndFlush(any());
+        // Отказ по занятому email не открывает транзакцию
+        verify(transactions, never()).execute(any());
+    }
+
+    /**
+     * Вызывает call из нескольких потоков и отпускает release, только когда все
+     * потоки встали в ожидание, — иначе опоздавший выполнил бы свой запрос после
+     * завершения первого. Возвращает результаты или исключения вызовов.
+     */
+    private static List<Object> callConcurrently(int callers, CountDownLatch release, Callable<?> call)
+            throws InterruptedException {
+        Object[] outcomes = new Object[callers];
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < callers; i++) {
+            int caller = i;
+            Thread thread = new Thread(() -> {
+                try {
+                    outcomes[caller] = call.call();
+                } catch (Exception e) {
+                    outcomes[caller] = e;
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (threads.stream().anyMatch(thread -> thread.getState() != Thread.State.WAITING)) {
+            assertTrue(System.nanoTime() < deadline, "Потоки не дошли до ожидания");
+            Thread.sleep(1);
+        }
+        release.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return Arrays.asList(outcomes);
+    }
+
+    @Test
+    void getUsersByIdsKeepsRequestedOrderAndReportsMissing() {
+        UserDto first = new UserDto(1, "First", "first@example.com", 25, LocalDateTime.now(), 0);
+        UserDto third = new UserDto(3, "Third", "third@example.com", 30, LocalDateTime.now(), 0);
+        when(userRepository.findDtosByIds(List.of(3, 2, 1))).thenReturn(List.of(first, third));
+
+        UserLookupResultDto result = userService.getUsersByIds(Arrays.asList(3, 2, null, 1, 3));
+
+        assertEquals(List.of(third, first), result.getItems());
+        assertEquals(List.of(2), result.getMissing());
+        verify(userRepository, times(1)).findDtosByIds(any());
+    }
+
+    @Test
+    void getUsersByIdsQueriesInChunks() {
+        List<Integer> ids = IntStream.rangeClosed(1, UserService.LOOKUP_CHUNK_SIZE + 1).boxed().toList();
+        when(userRepository.findDtosByIds(anyList())).thenReturn(List.of());
+
+        UserLookupResultDto result = userService.getUsersByIds(ids);
+
+        assertEquals(ids, result.getMissing());
+        verify(userRepository).findDtosByIds(ids.subList(0, UserService.LOOKUP_CHUNK_SIZE));
+        verify(userRepository).findDtosByIds(List.of(UserService.LOOKUP_CHUNK_SIZE + 1));
+    }
+
+    @Test
+    void getUsersByIdsRejectsEmptyAndOversizedLists() {
+        List<Integer> oversized = IntStream.rangeClosed(1, UserService.MAX_LOOKUP_IDS + 1).boxed().toList();
+
+        assertThrows(ValidationException.class, () -> userService.getUsersByIds(List.of()));
+        assertThrows(ValidationException.class, () -> userService.getUsersByIds(Arrays.asList((Integer) null)));
+        assertThrows(ValidationException.class, () -> userService.getUsersByIds(oversized));
+        verifyNoInteractions(userRepository);
     }
 
     @Test
     void getAllUsers() {
-        User user1 = new User();
+        UserDto user1 = new UserDto();
         user1.setId(1);
         user1.setName("User 1");
 
-        User user2 = new User();
+        UserDto user2 = new UserDto();
         user2.setId(2);
         user2.setName("User 2");
 
-        when(userRepository.findAll()).thenReturn(List.of(user1, user2));
-        List<UserDto> result = userService.getAllUsers();
+        when(userRepository.findFirstPage(Limit.of(UserService.DEFAULT_PAGE_SIZE + 1)))
+                .thenReturn(List.of(user1, user2));
+        UserPageDto result = userService.getAllUsers(null, null);
 
-        assertEquals(2, result.size());
-        assertEquals("User 1", result.get(0).getName());
-        assertEquals("User 2", result.get(1).getName());
-        verify(userRepository, times(1)).findAll();
+        assertEquals(2, result.getItems().size());
+        assertEquals("User 1", result.getItems().get(0).getName());
+        assertEquals("User 2", result.getItems().get(1).getName());
+        assertNull(result.getNext());
+        verify(userRepository, never()).findAll();
     }
 
     @Test
-    void updateUser() {
-        User existingUser = new User();
-        existingUser.setId(1);
-        existingUser.setName("Old Name");
-        existingUser.setEmail("old@example.com");
-        existingUser.setAge(30);
+    void getAllUsersReturnsCursorForNextPage() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 12, 0);
+        UserDto user1 = new UserDto(1, "User 1", "user1@example.com", 20, createdAt, 0);
+        UserDto user2 = new UserDto(2, "User 2", "user2@example.com", 30, createdAt, 0);
+        UserDto user3 = new UserDto(3, "User 3", "user3@example.com", 40, createdAt, 0);
 
+        when(userRepository.findFirstPage(Limit.of(3))).thenReturn(List.of(user1, user2, user3));
+        UserPageDto first = userService.getAllUsers(null, 2);
+
+        assertEquals(2, first.getItems().size());
+        assertNotNull(first.getNext());
+
+        when(userRepository.findPageAfter(createdAt, 2, Limit.of(3))).thenReturn(List.of(user3));
+        UserPageDto second = userService.getAllUsers(first.getNext(), 2);
+
+        assertEquals(1, second.getItems().size());
+        assertEquals(3, second.getItems().get(0).getId());
+        assertNull(second.getNext());
+    }
+
+    @Test
+    void getAllUsersCapsPageSize() {
+        when(userRepository.findFirstPage(Limit.of(UserService.MAX_PAGE_SIZE + 1))).thenReturn(List.of());
+
+        userService.getAllUsers(null, 1_000_000);
+
+        verify(userRepository, times(1)).findFirstPage(Limit.of(UserService.MAX_PAGE_SIZE + 1));
+    }
+
+    @Test
+    void getAllUsersRejectsInvalidCursorAndLimit() {
+        assertThrows(ValidationException.class, () -> userService.getAllUsers("not-a-cursor", null));
+        assertThrows(ValidationException.class, () -> userService.getAllUsers(null, 0));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void searchUsersPagesByNameWithCursor() {
+        LocalDateTime createdAt = LocalDateTime.of(2024, 1, 1, 12, 0);
+        UserDto user1 = new UserDto(1, "Anna|1", "user1@example.com", 20, createdAt, 0);
+        UserDto user2 = new UserDto(2, "Anna|2", "user2@example.com", 30, createdAt, 0);
+        UserDto user3 = new UserDto(3, "Anna|3", "user3@example.com", 40, createdAt, 0);
+        UserSearchDto criteria = new UserSearchDto();
+        criteria.setName("ann");
+        criteria.setSort(UserSearchDto.SortField.NAME);
+        criteria.setDirection(Sort.Direction.DESC);
+        criteria.setLimit(2);
+
+        when(userRepository.search(criteria, null, null, 3)).thenReturn(List.of(user1, user2, user3));
+        UserPageDto first = userService.searchUsers(criteria);
+
+        assertEquals(2, first.getItems().size());
+        assertNotNull(first.getNext());
+
+        criteria.setCursor(first.getNext());
+        when(userRepository.search(criteria, "Anna|2", 2, 3)).thenReturn(List.of(user3));
+        UserPageDto second = userService.searchUsers(criteria);
+
+        assertEquals(List.of(user3), second.getItems());
+        assertNull(second.getNext());
+    }
+
+    @Test
+    void searchUsersRejectsCursorFromAnotherSort() {
+        UserSearchDto criteria = new UserSearchDto();
+        criteria.setSort(UserSearchDto.SortField.AGE);
+        criteria.setCursor(UserSearchCursor.after(new UserDto(1, "A", "a@example.com", 20, LocalDateTime.now(), 0),
+                UserSearchDto.SortField.NAME, Sort.Direction.ASC).encode());
+
+        assertThrows(ValidationException.class, () -> userService.searchUsers(criteria));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void searchUsersRejectsInvertedRanges() {
+        UserSearchDto criteria = new UserSearchDto();
+        criteria.setAgeFrom(40);
+        criteria.setAgeTo(30);
+
+        assertThrows(ValidationException.class, () -> userService.searchUsers(criteria));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void exportUsersStreamsEveryRow() {
+        int total = 1001;
+        when(userRepository.streamAllOrderById()).thenReturn(IntStream.rangeClosed(1, total).mapToObj(id -> {
+            UserDto user = new UserDto();
+            user.setId(id);
+            return user;
+        }));
+
+        List<UserDto> exported = new ArrayList<>();
+        long count = userService.exportUsers(exported::add);
+
+        assertEquals(total, count);
+        assertEquals(total, exported.size());
+        assertEquals(total, exported.get(total - 1).getId());
+        verify(userRepository, never()).findAll();
+    }
+
+    @Test
+    void updateUser() {
         UserCreateDto updateDto = new UserCreateDto();
         updateDto.setName("New Name");
         updateDto.setEmail("new@example.com");
         updateDto.setAge(35);
+        UserDto updated = new UserDto(1, "New Name", "new@example.com", 35, LocalDateTime.now(), 1);
 
-        when(userRepository.findById(1)).thenReturn(Optional.of(existingUser));
-        when(userRepository.save(any(User.class))).thenAnswer(invocation -> invocation.getArgument(0));
+        when(userRepository.updateColumns(1, "New Name", "new@example.com", 35, null))
+                .thenReturn(Optional.of(new UpdatedUser(updated, 30)));
 
-        UserDto result = userService.updateUser(1, updateDto);
+        UserDto result = userService.updateUser(1, updateDto, null);
 
         assertEquals("New Name", result.getName());
         assertEquals("new@example.com", result.getEmail());
         assertEquals(35, result.getAge());
+        assertEquals(1, result.getVersion());
 
-        verify(userRepository, times(1)).findById(1);
-        verify(userRepository, times(1)).save(existingUser);
+        verify(userRepository, never()).findById(any());
+        verify(userRepository, never()).save(any());
+        verify(emailIndex).add("new@example.com");
+        verify(statistics).ageChanged(30, 35);
     }
 
     @Test
     void updateUserExceptionWhenUserNotFound() {
         UserCreateDto updateDto = new UserCreateDto();
-        when(userRepository.findById(999)).thenReturn(Optional.empty());
+        updateDto.setName("New Name");
+        updateDto.setEmail("new@example.com");
+        updateDto.setAge(35);
+        when(userRepository.updateColumns(999, "New Name", "new@example.com", 35, null))
+                .thenReturn(Optional.empty());
 
-        assertThrows(RuntimeException.class, () -> userService.updateUser(999, updateDto));
-        verify(userRepository, times(1)).findById(999);
+        assertThrows(NotFoundException.class, () -> userService.updateUser(999, updateDto, null));
         verify(userRepository, never()).save(any());
     }
 
+    @Test
+    void updateUserRejectsInvalidBody() {
+        assertThrows(ValidationException.class, () -> userService.updateUser(1, new UserCreateDto(), null));
+        verifyNoInteractions(userRepository);
+    }
+
+    @Test
+    void updateUserRejectsStaleVersion() {
+        when(userRepository.updateColumns(1, null, null, 40, 2)).thenReturn(Optional.empty());
+        when(userRepository.findVersionById(1)).thenReturn(Optional.of(3));
+        UserPatchDto patch = new UserPatchDto();
+        patch.setAge(40);
+
+        assertThrows(PreconditionFailedException.class, () -> userService.patchUser(1, patch, 2));
+    }
+
+    @Test
+    void patchUserUpdatesOnlyGivenColumns() {
+        UserPatchDto patch = new UserPatchDto();
+        patch.setAge(40);
+        UserDto updated = new UserDto(1, "Test User", "test@example.com", 40, LocalDateTime.now(), 4);
+        when(userRepository.updateColumns(1, null, null, 40, 3))
+                .thenReturn(Optional.of(new UpdatedUser(updated, 25)));
+
+        UserDto result = userService.patchUser(1, patch, 3);
+
+        assertEquals(40, result.getAge());
+        assertEquals(4, result.getVersion());
+        verify(emailIndex, never()).add(any());
+    }
+
+    @Test
+    void patchUserNotFound() {
+        UserPatchDto patch = new UserPatchDto();
+        patch.setName("Name");
+        when(userRepository.updateColumns(999, "Name", null, null, 1)).thenReturn(Optional.empty());
+        when(userRepository.findVersionById(999)).thenReturn(Optional.empty());
+
+        assertThrows(NotFoundException.class, () -> userService.patchUser(999, patch, 1));
+    }
+
+    @Test
+    void patchUserDuplicateEmailIsConflict() {
+        UserPatchDto patch = new UserPatchDto();
+        patch.setEmail("taken@example.com");
+        when(userRepository.updateColumns(1, null, "taken@example.com", null, null))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        assertThrows(ConflictException.class, () -> userService.patchUser(1, patch, null));
+    }
+
+    @Test
+    void patchUserRejectsEmptyPatch() {
+        assertThrows(ValidationException.class, () -> userService.patchUser(1, new UserPatchDto(), null));
+        verifyNoInteractions(userRepository);
+    }
+
     @Test
     void deleteUser() {
-        doNothing().when(userRepository).deleteById(1);
+        UserDto deleted = new UserDto(1, "Test User", "test@example.com", 25, LocalDateTime.now(), 0);
+        when(userRepository.deleteUserById(1)).thenReturn(Optional.of(deleted));
         userService.deleteUser(1);
-        verify(userRepository, times(1)).deleteById(1);
+        verify(userRepository, times(1)).deleteUserById(1);
+        verify(statistics).deleted(deleted);
+        verify(userRepository, never()).findById(any());
+    }
+
+    @Test
+    void deleteUsersByIdsInChunks() {
+        List<Integer> ids = new ArrayList<>(IntStream.rangeClosed(1, 2500).boxed().toList());
+        ids.add(1);
+        when(userRepository.deleteUsersByIds(anyList())).thenAnswer(invocation ->
+                deletedUsers(((List<?>) invocation.getArgument(0)).size()));
+        UserBulkDeleteDto request = new UserBulkDeleteDto();
+        request.setIds(ids);
+
+        UserBulkDeleteResultDto result = userService.deleteUsers(request);
+
+        assertEquals(2500, result.getDeleted());
+        assertEquals(3, result.getStatements());
+        verify(userRepository).deleteUsersByIds(argThat(chunk -> chunk.size() == 500));
+        verify(statistics, times(2500)).deleted(any());
+    }
+
+    private static List<UserDto> deletedUsers(int count) {
+        return IntStream.range(0, count).mapToObj(i -> new UserDto()).toList();
+    }
+
+    @Test
+    void deleteUsersCreatedBeforeLoopsUntilShortChunk() {
+        LocalDateTime before = LocalDateTime.of(2020, 1, 1, 0, 0);
+        when(userRepository.deleteUsersCreatedBefore(before, UserService.DELETE_CHUNK_SIZE))
+                .thenReturn(deletedUsers(UserService.DELETE_CHUNK_SIZE), deletedUsers(UserService.DELETE_CHUNK_SIZE),
+                        deletedUsers(7));
+        UserBulkDeleteDto request = new UserBulkDeleteDto();
+        request.setCreatedBefore(before);
+
+        UserBulkDeleteResultDto result = userService.deleteUsers(request);
+
+        assertEquals(2L * UserService.DELETE_CHUNK_SIZE + 7, result.getDeleted());
+        assertEquals(3, result.getStatements());
+    }
+
+    @Test
+    void deleteUsersRequiresExactlyOneFilter() {
+        UserBulkDeleteDto both = new UserBulkDeleteDto();
+        both.setIds(List.of(1));
+        both.setCreatedBefore(LocalDateTime.now());
+
+        assertThrows(ValidationException.class, () -> userService.deleteUsers(new UserBulkDeleteDto()));
+        assertThrows(ValidationException.class, () -> userService.deleteUsers(both));
+        verifyNoInteractions(userRepository);
     }
 
     @Test
@@ -156,5 +663,6 @@ class UserServiceTest {
         assertEquals(user.getName(), dto.getName());
         assertEquals(user.getEmail(), dto.getEmail());
         assertEquals(user.getAge(), dto.getAge());
+        assertEquals(user.getCreatedAt(), dto.getCreatedAt());
     }
 }
\ No newline at end of file
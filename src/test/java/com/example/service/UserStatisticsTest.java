@@ -0,0 +1,153 @@
+package com.example.service;
+
+import com.example.datasource.UserShards;
+import com.example.dto.UserDto;
+import com.example.dto.UserStatsDto;
+import com.example.repository.UserRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionSynchronizationUtils;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserStatisticsTest {
+    private static final LocalDateTime DAY1 = LocalDateTime.of(2024, 1, 1, 10, 0);
+    private static final LocalDateTime DAY2 = LocalDateTime.of(2024, 1, 2, 23, 59);
+
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final UserStatistics statistics = new UserStatistics(userRepository, UserShards.single());
+
+    private static UserDto user(int age, LocalDateTime createdAt) {
+        return new UserDto(1, "User", "user@example.com", age, createdAt, 0);
+    }
+
+    @Test
+    void tracksCreatesUpdatesAndDeletes() {
+        statistics.created(user(25, DAY1));
+        statistics.created(user(29, DAY1));
+        statistics.created(user(41, DAY2));
+        statistics.ageChanged(29, 30);
+        statistics.deleted(user(41, DAY2));
+
+        UserStatsDto stats = statistics.snapshot();
+
+        assertEquals(2, stats.getTotal());
+        assertEquals(Map.of("20-29", 1L, "30-39", 1L), stats.getAgeHistogram());
+        assertEquals(Map.of(LocalDate.of(2024, 1, 1), 2L), stats.getSignupsPerDay());
+    }
+
+    @Test
+    void appliesChangesOnlyAfterCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            statistics.created(user(25, DAY1));
+            statistics.ageChanged(25, 35);
+            assertEquals(0, statistics.snapshot().getTotal());
+
+            TransactionSynchronizationUtils.triggerAfterCommit();
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(Map.of("30-39", 1L), statistics.snapshot().getAgeHistogram());
+    }
+
+    @Test
+    void dropsChangesOfRolledBackTransaction() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            statistics.created(user(25, DAY1));
+            TransactionSynchronizationUtils.invokeAfterCompletion(
+                    TransactionSynchronizationManager.getSynchronizations(),
+                    TransactionSynchronization.STATUS_ROLLED_BACK);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(0, statistics.snapshot().getTotal());
+    }
+
+    @Test
+    void reconcileReplacesDriftedAggregates() {
+        statistics.created(user(25, DAY1));
+        when(userRepository.countByAge()).thenReturn(List.<Object[]>of(
+                new Object[]{25, 3L}, new Object[]{61, 2L}));
+        when(userRepository.countByCreatedDate()).thenReturn(List.<Object[]>of(
+                new Object[]{LocalDate.of(2024, 1, 1), 4L}, new Object[]{LocalDate.of(2024, 1, 2), 1L}));
+
+        statistics.reconcile();
+        statistics.created(user(62, DAY2));
+        UserStatsDto stats = statistics.snapshot();
+
+        assertEquals(6, stats.getTotal());
+        assertEquals(List.of("20-29", "60-69"), List.copyOf(stats.getAgeHistogram().keySet()));
+        assertEquals(3L, stats.getAgeHistogram().get("60-69"));
+        assertEquals(2L, stats.getSignupsPerDay().get(LocalDate.of(2024, 1, 2)));
+        assertNotNull(stats.getReconciledAt());
+    }
+
+    @Test
+    void changeCommittedBeforeSnapshotIsCountedOnce() throws Exception {
+        // Строка уже в таблице и в снимке сверки, afterCommit её транзакции ещё не отработал
+        when(userRepository.countByAge()).thenReturn(List.<Object[]>of(new Object[]{25, 1L}));
+        when(userRepository.countByCreatedDate()).thenReturn(List.<Object[]>of(
+                new Object[]{LocalDate.of(2024, 1, 1), 1L}));
+        CountDownLatch committed = new CountDownLatch(1);
+        CountDownLatch applyChange = new CountDownLatch(1);
+        Thread writer = new Thread(() -> {
+            TransactionSynchronizationManager.initSynchronization();
+            try {
+                statistics.created(user(25, DAY1));
+                TransactionSynchronizationUtils.triggerBeforeCommit(false);
+                committed.countDown();
+                applyChange.await();
+                TransactionSynchronizationUtils.triggerAfterCommit();
+                TransactionSynchronizationUtils.triggerAfterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                TransactionSynchronizationManager.clearSynchronization();
+            }
+        });
+        writer.start();
+        committed.await();
+
+        Thread reconcile = new Thread(statistics::reconcile);
+        reconcile.start();
+        verify(userRepository, after(200).never()).openSnapshot();
+        applyChange.countDown();
+        writer.join();
+        reconcile.join();
+
+        assertEquals(1, statistics.snapshot().getTotal());
+        assertEquals(Map.of("20-29", 1L), statistics.snapshot().getAgeHistogram());
+    }
+
+    @Test
+    void changeCommittedAfterSnapshotIsKept() {
+        when(userRepository.countByAge()).thenAnswer(invocation -> {
+            statistics.created(user(41, DAY2));
+            return List.<Object[]>of(new Object[]{25, 1L});
+        });
+        when(userRepository.countByCreatedDate()).thenReturn(List.<Object[]>of(
+                new Object[]{LocalDate.of(2024, 1, 1), 1L}));
+
+        statistics.reconcile();
+
+        assertEquals(2, statistics.snapshot().getTotal());
+        assertEquals(Map.of("20-29", 1L, "40-49", 1L), statistics.snapshot().getAgeHistogram());
+    }
+}
@@ -0,0 +1,13 @@
+-- База, созданная ddl-auto=update до Flyway: пользователи есть, users_seq нет
+CREATE TABLE users (
+    id         INTEGER      NOT NULL PRIMARY KEY,
+    name       VARCHAR(255) NOT NULL,
+    email      VARCHAR(255) NOT NULL UNIQUE,
+    age        INTEGER      NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    version    INTEGER      DEFAULT 0 NOT NULL
+);
+
+INSERT INTO users (id, name, email, age, created_at, version)
+SELECT n, 'Legacy ' || n, 'legacy' || n || '@example.com', 30, now(), 0
+FROM generate_series(1, 120) AS n;
@@ -0,0 +1,22 @@
+CREATE SEQUENCE IF NOT EXISTS users_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS users (
+    id INTEGER PRIMARY KEY,
+    name VARCHAR(255),
+    email VARCHAR(255) CONSTRAINT users_email_key UNIQUE,
+    age INTEGER,
+    created_at TIMESTAMP,
+    version INTEGER DEFAULT 0 NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS user_changes (
+    id         BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    type       VARCHAR(16)  NOT NULL,
+    user_id    INTEGER      NOT NULL,
+    name       VARCHAR(255) NOT NULL,
+    email      VARCHAR(255) NOT NULL,
+    age        INTEGER      NOT NULL,
+    created_at TIMESTAMP(6) NOT NULL,
+    version    INTEGER      NOT NULL,
+    changed_at TIMESTAMP(6) NOT NULL
+);